@@ -0,0 +1,97 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures bulk insert throughput on an on-disk database at 1k, 10k and 100k rows, with
+ * row-by-row saveImage at 1k as the baseline.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkInsertBenchmarkTest {
+
+    private static final String TAG = "BulkInsertBenchmark";
+    private static final String DB_NAME = "bulk_insert_test.db";
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int BASELINE_ROWS = 1_000;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void saveImages_throughputAtEachSize() {
+        List<ImageEntry> baseline = entries(BASELINE_ROWS);
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (ImageEntry entry : baseline) {
+            assertNotEquals(-1, helper.saveImage(entry));
+        }
+        double singleRate = rate(BASELINE_ROWS, SystemClock.elapsedRealtimeNanos() - start);
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+        Log.i(TAG, String.format(Locale.US, "saveImage x %d: %.0f rows/s", BASELINE_ROWS, singleRate));
+
+        for (int size : SIZES) {
+            List<ImageEntry> batch = entries(size);
+            helper = new DatabaseHelper(context, DB_NAME);
+            start = SystemClock.elapsedRealtimeNanos();
+            BulkInsertResult result = helper.saveImages(batch);
+            double bulkRate = rate(size, SystemClock.elapsedRealtimeNanos() - start);
+
+            assertEquals(size, result.getInsertedCount());
+            assertEquals(size, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), "images"));
+            Log.i(TAG, String.format(Locale.US, "saveImages x %d: %.0f rows/s", size, bulkRate));
+            if (size == BASELINE_ROWS) {
+                assertTrue("bulk=" + bulkRate + " single=" + singleRate, bulkRate > singleRate);
+            }
+            helper.close();
+            context.deleteDatabase(DB_NAME);
+        }
+    }
+
+    private static List<ImageEntry> entries(int count) {
+        List<ImageEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ImageEntry entry = new ImageEntry();
+            entry.setImagePath("/storage/images/IMG_" + i + ".jpg");
+            entry.setTitle("Sample " + i);
+            entry.setDescription("Leaf spot sample " + i);
+            entry.setFarmerName("Farmer " + (i % 500));
+            entry.setLocation("Village " + (i % 120));
+            entry.setPlantDisease("Leaf Blight");
+            entry.setTimestamp(1_600_000_000_000L + i * 60_000L);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static double rate(int rows, long nanos) {
+        return rows * 1e9 / nanos;
+    }
+}
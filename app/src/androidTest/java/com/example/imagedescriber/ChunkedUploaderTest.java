@@ -0,0 +1,85 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.cloudinary.Cloudinary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks chunk boundaries and that an interrupted upload resumes at the last confirmed offset.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChunkedUploaderTest {
+
+    private static final int CHUNK = 10 * 1024;
+
+    private StubCloudinaryServer server;
+    private ChunkedUploader uploader;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        server = new StubCloudinaryServer();
+        uploader = new ChunkedUploader(new CloudinaryGateway(new Cloudinary(server.clientConfig())), CHUNK);
+
+        file = new File(context.getCacheDir(), "chunked_upload_test.bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[25 * 1024]);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        file.delete();
+    }
+
+    @Test
+    public void sendsFileInChunks() throws Exception {
+        uploader.upload(file, CloudinaryGateway.uploadOptions("leaf", null), ChunkedUploader.newUploadId(), 0, null);
+
+        assertEquals(Arrays.asList("bytes 0-10239/25600", "bytes 10240-20479/25600", "bytes 20480-25599/25600"),
+                server.getContentRanges());
+    }
+
+    @Test
+    public void resumesAtLastConfirmedOffset() throws Exception {
+        String uploadId = ChunkedUploader.newUploadId();
+        long[] confirmed = new long[1];
+        try {
+            uploader.upload(file, CloudinaryGateway.uploadOptions("leaf", null), uploadId, 0,
+                    (session, offset, total) -> {
+                        confirmed[0] = offset;
+                        // Every retry of the second chunk fails
+                        server.failNext(Integer.MAX_VALUE);
+                    });
+            fail("Upload should have failed");
+        } catch (Exception expected) {
+            assertEquals(CHUNK, confirmed[0]);
+        }
+
+        server.failNext(0);
+        uploader.upload(file, CloudinaryGateway.uploadOptions("leaf", null), uploadId, confirmed[0], null);
+
+        List<String> ranges = server.getContentRanges();
+        assertEquals("bytes 20480-25599/25600", ranges.get(ranges.size() - 1));
+        assertEquals("bytes 10240-20479/25600", ranges.get(ranges.size() - 2));
+        assertFalse(ranges.subList(1, ranges.size()).contains("bytes 0-10239/25600"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.imagedescriber;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that background work submitted from a pool thread cannot deadlock a full queue, and that
+ * the main thread never queues past the limit.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CloudIoExecutorTest {
+
+    private static final long TIMEOUT_S = 5;
+
+    @Test
+    public void nestedBackgroundSubmission_withFullQueue_completes() throws InterruptedException {
+        // One thread and one queue slot: the outer task occupies the thread, the first nested
+        // task takes the slot, and the second finds the queue full
+        CloudIoExecutor executor = new CloudIoExecutor(1, 1);
+        CountDownLatch queued = new CountDownLatch(1);
+        CountDownLatch overflow = new CountDownLatch(1);
+        CountDownLatch outer = new CountDownLatch(1);
+
+        executor.execute(CloudIoExecutor.Priority.BACKGROUND, () -> {
+            executor.execute(CloudIoExecutor.Priority.BACKGROUND, queued::countDown);
+            executor.execute(CloudIoExecutor.Priority.BACKGROUND, overflow::countDown);
+            outer.countDown();
+        });
+
+        assertTrue("nested submission blocked the only pool thread", outer.await(TIMEOUT_S, TimeUnit.SECONDS));
+        assertTrue(overflow.await(TIMEOUT_S, TimeUnit.SECONDS));
+        assertTrue(queued.await(TIMEOUT_S, TimeUnit.SECONDS));
+        assertEquals(0, executor.getFailedCount());
+    }
+
+    @Test
+    public void mainThreadBackgroundSubmission_withFullQueue_isDropped() throws InterruptedException {
+        CloudIoExecutor executor = new CloudIoExecutor(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch queued = new CountDownLatch(1);
+        executor.execute(CloudIoExecutor.Priority.BACKGROUND, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(TIMEOUT_S, TimeUnit.SECONDS));
+
+        boolean[] accepted = new boolean[2];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            accepted[0] = executor.execute(CloudIoExecutor.Priority.BACKGROUND, queued::countDown);
+            accepted[1] = executor.execute(CloudIoExecutor.Priority.BACKGROUND, () -> fail("ran past the limit"));
+        });
+        release.countDown();
+
+        assertTrue(accepted[0]);
+        assertFalse(accepted[1]);
+        assertEquals(1, executor.getDroppedCount());
+        assertTrue(queued.await(TIMEOUT_S, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.cloudinary.Cloudinary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the outbox against a local stand-in for the Cloudinary API that fails a configurable
+ * number of requests and answers slowly, and checks that every queued write is eventually applied.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CloudOutboxTest {
+
+    private static final long TIMEOUT_MS = 20_000;
+    private static final String DEDUP_PREFS = "upload_dedup_test";
+    private static final String STORE_PREFS = "outbox_store_test";
+
+    private DatabaseHelper helper;
+    private StubCloudinaryServer server;
+    private CloudOutbox outbox;
+    private OfflineImageStore store;
+    private File storeDir;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        helper = new DatabaseHelper(context, null);
+        server = new StubCloudinaryServer();
+
+        SharedPreferences dedupPrefs = context.getSharedPreferences(DEDUP_PREFS, Context.MODE_PRIVATE);
+        dedupPrefs.edit().clear().commit();
+        SharedPreferences storePrefs = context.getSharedPreferences(STORE_PREFS, Context.MODE_PRIVATE);
+        storePrefs.edit().clear().commit();
+        storeDir = new File(context.getCacheDir(), "outbox_store_" + System.nanoTime());
+        store = new OfflineImageStore(context, storeDir, storePrefs);
+        outbox = new CloudOutbox(helper, new CloudinaryGateway(new Cloudinary(server.clientConfig())),
+                new UploadDeduplicator(helper, dedupPrefs), store, 10, 100, 0);
+        helper.setCloudOutbox(outbox);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        helper.close();
+        File[] files = storeDir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        storeDir.delete();
+    }
+
+    @Test
+    public void drainsQueuedWrites() {
+        for (int i = 0; i < 10; i++) {
+            outbox.enqueueMetadata(i, 1, "image_" + i, "alt=plant " + i);
+        }
+        awaitEmpty();
+
+        assertEquals(10, outbox.getSucceededCount());
+        assertEquals(0, outbox.getFailedAttemptCount());
+    }
+
+    @Test
+    public void retriesAfterServerErrors() {
+        server.failNext(3);
+        outbox.enqueueMetadata(1, 1, "image_1", "alt=leaf");
+        outbox.enqueueDestroy("image_2");
+        awaitEmpty();
+
+        assertEquals(3, outbox.getFailedAttemptCount());
+        assertEquals(2, outbox.getSucceededCount());
+    }
+
+    @Test
+    public void coalescesRepeatedEnqueues() {
+        server.setLatencyMs(200);
+        for (int i = 0; i < 5; i++) {
+            outbox.enqueueMetadata(1, i + 1, "image_1", "alt=version " + i);
+        }
+        awaitEmpty();
+
+        // The first push may already be in flight; everything after it collapses into one call
+        assertTrue(String.valueOf(server.getRequestCount()), server.getRequestCount() <= 2);
+    }
+
+    @Test
+    public void coalescingWindowSendsOnlyLatestSnapshot() {
+        outbox.setCoalesceWindowMs(300);
+        for (int i = 0; i < 5; i++) {
+            outbox.enqueueMetadata(1, i + 1, "image_1", "alt=version " + i);
+        }
+        awaitEmpty();
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(4, outbox.getCoalescedCount());
+        // Form or multipart encoding depending on the SDK transport
+        assertTrue(server.getLastBody(), server.getLastBody().matches("(?s).*version(\\+| |%20)4.*"));
+    }
+
+    @Test
+    public void syncPushesOnlyChangedRows() {
+        ImageEntry entry = new ImageEntry();
+        entry.setImagePath("/tmp/leaf.jpg");
+        entry.setDescription("Leaf Blight");
+        entry.setTimestamp(1000);
+        entry.setPublicId("leaf");
+        long id = helper.saveImage(entry, true);
+
+        assertEquals(0, helper.syncAllMetadataToCloudinary().getPushedCount());
+
+        // Rewriting the same values must not make the row dirty
+        helper.updateImageDetailsFull(id, null, "Leaf Blight", null, null, null, null, 1000);
+        assertEquals(0, outbox.getPendingCount());
+
+        helper.getWritableDatabase().execSQL("UPDATE images SET description = 'Rust' WHERE id = " + id);
+        MetadataSyncResult result = helper.syncAllMetadataToCloudinary();
+        assertEquals(1, result.getPushedCount());
+        assertEquals(0, result.getSkippedCount());
+
+        awaitEmpty();
+        assertEquals(1, helper.syncAllMetadataToCloudinary().getSkippedCount());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void syncPushesRowsSavedWithoutTheirContext() {
+        // A reused or picked resource carries another entry's context, or none
+        ImageEntry entry = new ImageEntry();
+        entry.setImagePath("/tmp/leaf.jpg");
+        entry.setDescription("Leaf Blight");
+        entry.setTimestamp(1000);
+        entry.setPublicId("leaf");
+        helper.saveImage(entry);
+
+        assertEquals(1, helper.syncAllMetadataToCloudinary().getPushedCount());
+        awaitEmpty();
+        assertEquals(0, helper.syncAllMetadataToCloudinary().getPushedCount());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void uploadMarksRowSyncedAtUploadedVersion() throws IOException {
+        File file = tempFile("leaf");
+        ImageEntry entry = new ImageEntry();
+        entry.setImagePath(file.getAbsolutePath());
+        entry.setDescription("Leaf Blight");
+        entry.setTimestamp(1000);
+        long id = helper.saveImage(entry);
+
+        helper.enqueueUpload(id, file);
+        awaitEmpty();
+
+        String publicId = helper.getImageById(id).getPublicId();
+        assertTrue(publicId.startsWith("agridata_"));
+        // The sent file is kept as the row's offline original
+        assertNotNull(store.get(publicId));
+        assertFalse(file.exists());
+        // The upload carried the context, so there is nothing left to push
+        MetadataSyncResult result = helper.syncAllMetadataToCloudinary();
+        assertEquals(0, result.getPushedCount());
+        assertEquals(1, result.getSkippedCount());
+        assertEquals(1, server.getRequestCount());
+        file.delete();
+    }
+
+    @Test
+    public void rowsSharingContentGetTheirOwnResources() throws IOException {
+        ImageEntry first = new ImageEntry();
+        first.setImagePath("/tmp/leaf.jpg");
+        first.setDescription("Leaf Blight");
+        first.setTimestamp(1000);
+        first.setPublicId("leaf_first");
+        first.setCloudinaryUrl("https://res.cloudinary.com/test/image/upload/leaf_first.jpg");
+        first.setContentHash("same-bytes");
+        long firstId = helper.saveImage(first, true);
+
+        File file = tempFile("LEAF-BYTES");
+        ImageEntry second = new ImageEntry();
+        second.setImagePath(file.getAbsolutePath());
+        second.setDescription("Rust");
+        second.setTimestamp(2000);
+        second.setContentHash("same-bytes");
+        long secondId = helper.saveImage(second);
+
+        helper.enqueueUpload(secondId, file);
+        awaitEmpty();
+
+        String secondPublicId = helper.getImageById(secondId).getPublicId();
+        assertNotEquals("leaf_first", secondPublicId);
+        // Created from the stored original: the URL went up, the file did not
+        assertTrue(server.getLastBody(), server.getLastBody().contains("leaf_first.jpg"));
+        assertFalse(server.getLastBody().contains("LEAF-BYTES"));
+        assertNotNull(store.get(secondPublicId));
+
+        // Edits to each row are pushed to each row's own resource
+        helper.updateImageDetailsFull(firstId, null, "Leaf Spot", null, null, null, null, 1000);
+        helper.updateImageDetailsFull(secondId, null, "Stem Rust", null, null, null, null, 2000);
+        awaitEmpty();
+        assertEquals(3, server.getRequestCount());
+        assertEquals(0, helper.syncAllMetadataToCloudinary().getPushedCount());
+        file.delete();
+    }
+
+    @Test
+    public void deletingDuringUploadDestroysTheNewResource() throws IOException {
+        File file = tempFile("leaf");
+        ImageEntry entry = new ImageEntry();
+        entry.setImagePath(file.getAbsolutePath());
+        entry.setDescription("Leaf Blight");
+        entry.setTimestamp(1000);
+        long id = helper.saveImage(entry);
+
+        server.setLatencyMs(1000);
+        helper.enqueueUpload(id, file);
+        SystemClock.sleep(200);
+        assertTrue(helper.deleteImage(id));
+        server.setLatencyMs(0);
+        awaitEmpty();
+
+        assertFalse(file.exists());
+        // The upload found no row to attach to and queued a delete of what it created
+        assertEquals(2, server.getRequestCount());
+        assertTrue(server.getLastPath(), server.getLastPath().endsWith("/destroy"));
+    }
+
+    @Test
+    public void backoffDoublesUpToCap() {
+        assertEquals(10, CloudOutbox.backoffDelay(1, 10, 100));
+        assertEquals(20, CloudOutbox.backoffDelay(2, 10, 100));
+        assertEquals(80, CloudOutbox.backoffDelay(4, 10, 100));
+        assertEquals(100, CloudOutbox.backoffDelay(5, 10, 100));
+        assertEquals(100, CloudOutbox.backoffDelay(60, 10, 100));
+    }
+
+    private static File tempFile(String content) throws IOException {
+        File file = File.createTempFile("leaf", ".jpg", InstrumentationRegistry.getInstrumentation()
+                .getTargetContext().getCacheDir());
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        return file;
+    }
+
+    private void awaitEmpty() {
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MS;
+        while (outbox.getPendingCount() > 0) {
+            assertTrue("Outbox still has " + outbox.getPendingCount() + " pending",
+                    SystemClock.elapsedRealtime() < deadline);
+            SystemClock.sleep(20);
+        }
+    }
+}
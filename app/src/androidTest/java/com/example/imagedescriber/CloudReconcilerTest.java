@@ -0,0 +1,132 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.DatabaseUtils;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.cloudinary.Cloudinary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the reconciler through the real gateway against a local stand-in for the Admin API, and
+ * checks paging by cursor, resuming an interrupted run and skipping resources already applied.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CloudReconcilerTest {
+
+    private static final String PREFS = "cloud_reconcile_test";
+
+    private DatabaseHelper helper;
+    private StubCloudinaryServer server;
+    private SharedPreferences prefs;
+    private CloudReconciler reconciler;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        helper = new DatabaseHelper(context, null);
+        server = new StubCloudinaryServer();
+        prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+
+        CloudinaryGateway gateway = new CloudinaryGateway(new Cloudinary(server.clientConfig()));
+        reconciler = new CloudReconciler(helper, gateway, prefs);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        helper.close();
+        prefs.edit().clear().commit();
+    }
+
+    @Test
+    public void run_followsCursorAcrossPages() throws Exception {
+        server.setResourcePages(
+                page("1", resource("agridata_1", "2024-03-05T09:00:00Z", "plant_name=Maize|disease=Rust")),
+                page(null, resource("agridata_2", "2024-03-06T09:00:00Z", "plant_name=Rice|disease=Blast")));
+
+        ReconcileResult result = reconciler.run();
+
+        assertEquals(2, server.getRequestCount());
+        assertTrue(server.getLastPath(), server.getLastPath().contains("next_cursor=1"));
+        assertEquals(2, result.getInsertedCount());
+        for (ImageEntry row : helper.getAllImages()) {
+            assertNotNull(row.getCloudinaryUrl());
+            assertNotNull(row.getTitle());
+            assertNotNull(row.getPlantDisease());
+        }
+    }
+
+    @Test
+    public void run_resumesAtSavedCursorAfterFailure() throws Exception {
+        String first = resource("agridata_1", "2024-03-05T09:00:00Z", "plant_name=Maize");
+        String second = resource("agridata_2", "2024-03-06T09:00:00Z", "plant_name=Rice");
+        server.setResourcePages(page("1", first), null);
+        try {
+            reconciler.run();
+            fail("second page should have failed");
+        } catch (Exception expected) {
+            // The first page is committed and its cursor saved
+        }
+        assertEquals(1, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), "images"));
+
+        server.setResourcePages(page("1", first), page(null, second));
+        int before = server.getRequestCount();
+        ReconcileResult result = reconciler.run();
+
+        assertEquals(1, server.getRequestCount() - before);
+        assertTrue(server.getLastPath(), server.getLastPath().contains("next_cursor=1"));
+        assertEquals(1, result.getInsertedCount());
+        assertEquals(2, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), "images"));
+    }
+
+    @Test
+    public void run_appliesOnlyResourcesUpdatedSinceLastRun() throws Exception {
+        server.setResourcePages(page(null,
+                resource("agridata_1", "2024-03-05T09:00:00Z", "plant_name=Maize"),
+                resource("agridata_2", "2024-03-06T09:00:00Z", "plant_name=Rice")));
+        assertEquals(2, reconciler.run().getInsertedCount());
+
+        // Only the second resource's context was edited elsewhere
+        server.setResourcePages(page(null,
+                resource("agridata_1", "2024-03-05T09:00:00Z", "plant_name=Maize"),
+                resource("agridata_2", "2024-03-07T09:00:00Z", "plant_name=Wheat")));
+        ReconcileResult second = reconciler.run();
+
+        assertEquals(1, second.getUpdatedCount());
+        assertEquals(0, second.getInsertedCount());
+        assertEquals(0, second.getUnchangedCount());
+    }
+
+    private static String page(String nextCursor, String... resources) {
+        return "{\"resources\":[" + String.join(",", resources) + "]"
+                + (nextCursor != null ? ",\"next_cursor\":\"" + nextCursor + "\"" : "") + "}";
+    }
+
+    // Created at a fixed time; updatedAt is when the context last changed
+    private static String resource(String publicId, String updatedAt, String context) {
+        StringBuilder custom = new StringBuilder();
+        for (String pair : context.split("\\|")) {
+            String[] parts = pair.split("=", 2);
+            if (custom.length() > 0) custom.append(',');
+            custom.append('"').append(parts[0]).append("\":\"").append(parts[1]).append('"');
+        }
+        return "{\"public_id\":\"" + publicId + "\",\"format\":\"jpg\",\"type\":\"upload\","
+                + "\"secure_url\":\"https://res.cloudinary.com/test/image/upload/" + publicId + ".jpg\","
+                + "\"created_at\":\"2024-03-01T09:00:00Z\","
+                + "\"last_updated\":{\"updated_at\":\"" + updatedAt + "\"},"
+                + "\"context\":{\"custom\":{" + custom + "}}}";
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.imagedescriber;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.cloudinary.Cloudinary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times N sequential uploads through the shared gateway against a local stub server and logs
+ * how many TCP connections they needed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CloudUploadBenchmarkTest {
+
+    private static final String TAG = "CloudUploadBenchmark";
+    private static final int UPLOADS = 20;
+
+    private StubCloudinaryServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubCloudinaryServer();
+        server.setLatencyMs(5);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void sequentialUploads_shareConnections() throws Exception {
+        CloudinaryGateway gateway = new CloudinaryGateway(new Cloudinary(server.clientConfig()));
+        byte[] image = new byte[64 * 1024];
+
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < UPLOADS; i++) {
+            gateway.upload(image, CloudinaryGateway.uploadOptions(null, "alt=benchmark " + i));
+        }
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        Log.d(TAG, UPLOADS + " uploads in " + elapsed + " ms over " + server.getConnectionCount()
+                + " connections; " + gateway);
+        assertEquals(UPLOADS, server.getRequestCount());
+        assertEquals(UPLOADS, gateway.getRequestCount());
+        assertTrue("connections=" + server.getConnectionCount(), server.getConnectionCount() <= UPLOADS);
+    }
+}
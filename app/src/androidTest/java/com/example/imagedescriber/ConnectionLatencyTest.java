@@ -0,0 +1,83 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times one gallery page read on a 50k row database, opening and closing a helper per call as
+ * every screen used to, and through one long-lived helper.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConnectionLatencyTest {
+
+    private static final String TAG = "ConnectionLatencyTest";
+    private static final String DB_NAME = "latency_test.db";
+    private static final int ROWS = 50_000;
+    private static final int CALLS = 200;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        List<ImageEntry> entries = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            ImageEntry entry = new ImageEntry();
+            entry.setImagePath("/storage/images/IMG_" + i + ".jpg");
+            entry.setTitle("Sample " + i);
+            entry.setDescription("Leaf spot sample " + i);
+            entry.setTimestamp(1_600_000_000_000L + i * 60_000L);
+            entries.add(entry);
+        }
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        assertEquals(ROWS, helper.saveImages(entries).getInsertedCount());
+        helper.close();
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void sharedHelper_isFasterThanReopeningPerCall() {
+        long[] reopened = new long[CALLS];
+        for (int i = 0; i < CALLS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+            assertFalse(helper.getImagesPage(Long.MAX_VALUE, Long.MAX_VALUE, PagedImageList.DEFAULT_PAGE_SIZE).isEmpty());
+            helper.close();
+            reopened[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+
+        long[] shared = new long[CALLS];
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        for (int i = 0; i < CALLS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            assertFalse(helper.getImagesPage(Long.MAX_VALUE, Long.MAX_VALUE, PagedImageList.DEFAULT_PAGE_SIZE).isEmpty());
+            shared[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        helper.close();
+
+        long reopenedMedian = Timings.median(reopened);
+        long sharedMedian = Timings.median(shared);
+        Log.i(TAG, ROWS + " rows, median per call: reopened " + Timings.micros(reopenedMedian)
+                + ", shared " + Timings.micros(sharedMedian));
+        assertTrue("reopened=" + reopenedMedian + " shared=" + sharedMedian, sharedMedian < reopenedMedian);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+/** Checks reuse accounting and that repeated transcodes stop allocating once the pool is warm. */
+@RunWith(AndroidJUnit4.class)
+public class CountingBitmapPoolTest {
+
+    private static final long POOL_BYTES = 64L * 1024 * 1024;
+
+    private Context context;
+    private CountingBitmapPool pool;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        pool = new CountingBitmapPool(new LruBitmapPool(POOL_BYTES));
+    }
+
+    @Test
+    public void countsReuseAndAllocation() {
+        Bitmap first = pool.get(200, 100, Bitmap.Config.ARGB_8888);
+        pool.put(first);
+        Bitmap second = pool.get(200, 100, Bitmap.Config.ARGB_8888);
+
+        assertSame(first, second);
+        assertEquals(1, pool.getAllocatedCount());
+        assertEquals(1, pool.getReusedCount());
+        assertEquals(1, pool.getReturnedCount());
+    }
+
+    @Test
+    public void repeatedTranscodesReusePooledBitmaps() throws Exception {
+        File source = new File(context.getCacheDir(), "pool_source.jpg");
+        File target = new File(context.getCacheDir(), "pool_target.jpg");
+        Bitmap capture = Bitmap.createBitmap(4000, 3000, Bitmap.Config.ARGB_8888);
+        capture.eraseColor(Color.DKGRAY);
+        try (OutputStream out = new FileOutputStream(source)) {
+            capture.compress(Bitmap.CompressFormat.JPEG, 85, out);
+        }
+        capture.recycle();
+
+        try {
+            ImageTranscoder transcoder = new ImageTranscoder(pool);
+            transcoder.transcode(source, target);
+            long allocatedAfterFirst = pool.getAllocatedCount();
+            for (int i = 0; i < 3; i++) {
+                transcoder.transcode(source, target);
+            }
+
+            assertEquals(pool.toString(), allocatedAfterFirst, pool.getAllocatedCount());
+            assertTrue(pool.toString(), pool.getReusedCount() >= 6);
+        } finally {
+            source.delete();
+            target.delete();
+        }
+    }
+}
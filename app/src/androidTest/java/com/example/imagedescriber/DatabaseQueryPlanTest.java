@@ -0,0 +1,80 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Guards the main gallery queries against falling back to full table scans or temporary sorts.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseQueryPlanTest {
+
+    private DatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        helper = new DatabaseHelper(context, null);
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void pageQuery_walksTimestampIndex() {
+        String plan = explain(DatabaseHelper.pageQuery("*", 30), "1000", "1000", "5");
+        assertTrue(plan, plan.contains(DatabaseHelper.INDEX_TIMESTAMP));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void diseaseFilter_usesDiseaseIndex() {
+        String plan = explain(DatabaseHelper.QUERY_BY_DISEASE, "Leaf Blight");
+        assertTrue(plan, plan.contains(DatabaseHelper.INDEX_DISEASE));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void farmerGrouping_usesCoveringIndex() {
+        String plan = explain(DatabaseHelper.QUERY_COUNT_BY_FARMER);
+        assertTrue(plan, plan.contains("COVERING INDEX " + DatabaseHelper.INDEX_FARMER));
+    }
+
+    @Test
+    public void locationGrouping_usesCoveringIndex() {
+        String plan = explain(DatabaseHelper.QUERY_COUNT_BY_LOCATION);
+        assertTrue(plan, plan.contains("COVERING INDEX " + DatabaseHelper.INDEX_LOCATION));
+    }
+
+    @Test
+    public void unsyncedScan_usesPartialIndex() {
+        String plan = explain(DatabaseHelper.QUERY_UNSYNCED);
+        assertTrue(plan, plan.contains(DatabaseHelper.INDEX_UNSYNCED));
+    }
+
+    private String explain(String sql, String... args) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.imagedescriber;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNoException;
+
+/**
+ * Downloads one screen of gallery cells from Cloudinary's public demo cloud, once as originals
+ * and once through {@link DeliveryUrlBuilder}, and logs the bytes each needed. Skipped offline.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GalleryBandwidthTest {
+
+    private static final String TAG = "GalleryBandwidth";
+    // Two columns of roughly half-width, 200dp cells on a 1080 px wide phone
+    private static final int CELLS_PER_SCREEN = 8;
+    private static final int CELL_WIDTH = 540;
+    private static final int CELL_HEIGHT = 525;
+    private static final String[] PUBLIC_IDS = {"sample", "cld-sample", "cld-sample-2", "cld-sample-3"};
+
+    @Test
+    public void thumbnailsTransferFarFewerBytesPerScreen() {
+        DeliveryUrlBuilder builder = new DeliveryUrlBuilder("demo");
+        long originalBytes = 0;
+        long thumbnailBytes = 0;
+        for (int i = 0; i < CELLS_PER_SCREEN; i++) {
+            ImageEntry entry = new ImageEntry();
+            entry.setCloudinaryUrl("https://res.cloudinary.com/demo/image/upload/" + PUBLIC_IDS[i % PUBLIC_IDS.length] + ".jpg");
+            originalBytes += download(entry.getCloudinaryUrl());
+            thumbnailBytes += download(builder.thumbnail(entry, CELL_WIDTH, CELL_HEIGHT));
+        }
+
+        Log.d(TAG, "Per screen of " + CELLS_PER_SCREEN + " cells: originals " + originalBytes
+                + " bytes, thumbnails " + thumbnailBytes + " bytes");
+        assertTrue(thumbnailBytes + " vs " + originalBytes, thumbnailBytes * 2 < originalBytes);
+    }
+
+    private static long download(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            // Ask for WebP the way Glide's default stack would on a modern device
+            connection.setRequestProperty("Accept", "image/webp,image/*");
+            long bytes = 0;
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[16 * 1024];
+                int len;
+                while ((len = in.read(buffer)) > 0) bytes += len;
+            } finally {
+                connection.disconnect();
+            }
+            return bytes;
+        } catch (IOException e) {
+            assumeNoException("Cloudinary demo cloud not reachable", e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.bumptech.glide.load.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Loads a local JPEG through the shared loader and checks downsampling and that repeat loads
+ * are served from cache.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageLoaderTest {
+
+    private Context context;
+    private File image;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        image = new File(context.getCacheDir(), "loader_test_" + System.nanoTime() + ".jpg");
+        Bitmap source = Bitmap.createBitmap(2000, 1500, Bitmap.Config.ARGB_8888);
+        source.eraseColor(Color.GREEN);
+        try (OutputStream out = new FileOutputStream(image)) {
+            source.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        }
+        source.recycle();
+    }
+
+    @After
+    public void tearDown() {
+        image.delete();
+    }
+
+    @Test
+    public void loadBitmap_downsamplesAndCaches() throws Exception {
+        ImageLoader loader = ImageLoader.getInstance(context);
+        long memoryHits = loader.getLoadCount(DataSource.MEMORY_CACHE);
+
+        Bitmap first = loader.loadBitmap(image.getAbsolutePath(), 400, 400);
+        assertTrue(first.getWidth() + "x" + first.getHeight(), first.getWidth() <= 400 && first.getHeight() <= 400);
+
+        loader.loadBitmap(image.getAbsolutePath(), 400, 400);
+        assertEquals(memoryHits + 1, loader.getLoadCount(DataSource.MEMORY_CACHE));
+        assertTrue(loader.toString(), loader.getHitRate() > 0);
+    }
+}
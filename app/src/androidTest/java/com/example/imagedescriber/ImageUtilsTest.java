@@ -0,0 +1,139 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Decodes a rotated 12 MP capture from a file and from a stream, checks it comes out upright,
+ * and logs the peak memory each decode needed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageUtilsTest {
+
+    private static final String TAG = "ImageUtilsTest";
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+    private static final long FULL_SIZE_BYTES = (long) WIDTH * HEIGHT * 4;
+
+    private Context context;
+    private File capture;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        capture = new File(context.getCacheDir(), "orientation_test.jpg");
+
+        // Red marks the stored top-left corner; the rest is blue
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.BLUE);
+        Paint red = new Paint();
+        red.setColor(Color.RED);
+        new Canvas(bitmap).drawRect(0, 0, WIDTH / 4f, HEIGHT / 4f, red);
+        try (OutputStream out = new FileOutputStream(capture)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        }
+        bitmap.recycle();
+
+        ExifInterface exif = new ExifInterface(capture.getAbsolutePath());
+        exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_ROTATE_90));
+        exif.saveAttributes();
+    }
+
+    @After
+    public void tearDown() {
+        capture.delete();
+    }
+
+    @Test
+    public void decodeFile_isUprightWithinOneCopy() throws Exception {
+        assertUpright(measure("file", () -> ImageUtils.decode(capture, 1024, null)));
+    }
+
+    @Test
+    public void decodeStream_isUprightWithinOneCopy() throws Exception {
+        Uri uri = Uri.fromFile(capture);
+        assertUpright(measure("stream", () -> ImageUtils.decode(context, uri, 1024, null)));
+    }
+
+    private static void assertUpright(Bitmap bitmap) {
+        try {
+            // Rotated 90 degrees clockwise: portrait, with the red corner now at the top right
+            assertEquals(768, bitmap.getWidth());
+            assertEquals(1024, bitmap.getHeight());
+            assertEquals(Color.RED, approximate(bitmap.getPixel(bitmap.getWidth() - 10, 10)));
+            assertEquals(Color.BLUE, approximate(bitmap.getPixel(10, 10)));
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    private static int approximate(int color) {
+        return Color.red(color) > 200 && Color.blue(color) < 60 ? Color.RED
+                : Color.blue(color) > 200 && Color.red(color) < 60 ? Color.BLUE : color;
+    }
+
+    private interface Decode {
+        Bitmap run() throws Exception;
+    }
+
+    // Samples Java plus native heap while the decode runs
+    private static Bitmap measure(String label, Decode decode) throws Exception {
+        Runtime.getRuntime().gc();
+        long baseline = used();
+        AtomicLong peak = new AtomicLong(baseline);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                peak.accumulateAndGet(used(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+        Bitmap bitmap;
+        try {
+            bitmap = decode.run();
+        } finally {
+            running.set(false);
+            sampler.join();
+        }
+        peak.accumulateAndGet(used(), Math::max);
+
+        long peakBytes = peak.get() - baseline;
+        Log.d(TAG, label + " decode peak " + (peakBytes / 1024) + " KB; full-size copy is "
+                + (FULL_SIZE_BYTES / 1024) + " KB");
+        assertTrue("peak " + peakBytes, peakBytes < FULL_SIZE_BYTES / 2);
+        return bitmap;
+    }
+
+    private static long used() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+}
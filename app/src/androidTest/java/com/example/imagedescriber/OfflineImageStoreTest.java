@@ -0,0 +1,93 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+/** Checks pinning and least-recently-used eviction against a small byte budget. */
+@RunWith(AndroidJUnit4.class)
+public class OfflineImageStoreTest {
+
+    private static final int FILE_BYTES = 10 * 1024;
+
+    private Context context;
+    private File dir;
+    private SharedPreferences prefs;
+    private OfflineImageStore store;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        dir = new File(context.getCacheDir(), "offline_test_" + System.nanoTime());
+        prefs = context.getSharedPreferences("offline_test", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+        store = new OfflineImageStore(context, dir, prefs);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        dir.delete();
+        prefs.edit().clear().commit();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedUnpinnedFiles() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            File file = store.fileFor("image_" + i);
+            write(file);
+            file.setLastModified(1_000_000L * (i + 1));
+        }
+        store.setByteBudget(2 * FILE_BYTES);
+
+        assertNull(store.get("image_0"));
+        assertNotNull(store.get("image_1"));
+        assertNotNull(store.get("image_2"));
+    }
+
+    @Test
+    public void pinnedFilesSurviveEviction() throws IOException {
+        store.put("captured", write(new File(context.getCacheDir(), "capture_" + System.nanoTime())));
+        store.fileFor("captured").setLastModified(1_000_000L);
+        write(store.fileFor("viewed_long_ago"));
+
+        store.setByteBudget(FILE_BYTES);
+
+        assertNotNull(store.get("captured"));
+        assertNull(store.get("viewed_long_ago"));
+        assertTrue(store.getSizeBytes() <= FILE_BYTES);
+    }
+
+    @Test
+    public void resolvePrefersLocalFileThenStoredOriginal() throws IOException {
+        ImageEntry entry = new ImageEntry();
+        entry.setImagePath("https://res.cloudinary.com/demo/image/upload/leaf.jpg");
+        entry.setPublicId("leaf");
+        assertEquals(entry.getImagePath(), store.resolve(entry));
+
+        write(store.fileFor("leaf"));
+        assertEquals(store.fileFor("leaf").getAbsolutePath(), store.resolve(entry));
+    }
+
+    private static File write(File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[FILE_BYTES]);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Maps the same rows through the full and the summary projection and reports rows mapped per
+ * second and Java heap bytes allocated per row.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RowMappingBenchmarkTest {
+
+    private static final String TAG = "RowMappingBenchmark";
+    private static final int ROWS = 10_000;
+    private static final int RUNS = 5;
+
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        helper = new DatabaseHelper(context, null);
+        char[] notes = new char[500];
+        Arrays.fill(notes, 'n');
+        List<ImageEntry> entries = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            ImageEntry entry = new ImageEntry();
+            entry.setImagePath("/storage/images/IMG_" + i + ".jpg");
+            entry.setTitle("Sample " + i);
+            entry.setDescription("Leaf spot sample " + i);
+            entry.setFarmerName("Farmer " + (i % 500));
+            entry.setLocation("Village " + (i % 120));
+            entry.setPlantDisease("Leaf Blight");
+            entry.setAdditionalDetails(new String(notes));
+            entry.setTimestamp(1_600_000_000_000L + i * 60_000L);
+            entries.add(entry);
+        }
+        assertEquals(ROWS, helper.saveImages(entries).getInsertedCount());
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void summaryProjection_mapsFasterAndAllocatesLess() {
+        long[] full = measure(() -> helper.getImagesPage(Long.MAX_VALUE, Long.MAX_VALUE, ROWS));
+        long[] summary = measure(() -> helper.getImageSummariesPage(Long.MAX_VALUE, Long.MAX_VALUE, ROWS));
+
+        Log.i(TAG, describe("full", full));
+        Log.i(TAG, describe("summary", summary));
+        assertTrue(describe("summary", summary) + " vs " + describe("full", full), summary[1] < full[1]);
+    }
+
+    private interface Query {
+        List<ImageEntry> run();
+    }
+
+    // {median nanos per query, heap bytes allocated per query}
+    private static long[] measure(Query query) {
+        assertEquals(ROWS, query.run().size());
+        long[] nanos = new long[RUNS];
+        long allocated = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long bytesBefore = allocatedBytes();
+            long start = SystemClock.elapsedRealtimeNanos();
+            query.run();
+            nanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+            allocated += allocatedBytes() - bytesBefore;
+        }
+        return new long[]{Timings.median(nanos), allocated / RUNS};
+    }
+
+    private static long allocatedBytes() {
+        String value = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        return value != null ? Long.parseLong(value) : 0;
+    }
+
+    private static String describe(String name, long[] result) {
+        return String.format(Locale.US, "%s: %.0f rows/s, %d bytes/row", name,
+                ROWS * 1e9 / result[0], result[1] / ROWS);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Upgrades a populated version 1 database to the current schema and reports how long each
+ * migration step took.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SchemaMigrationTest {
+
+    private static final String TAG = "SchemaMigrationTest";
+    private static final String DB_NAME = "migration_test.db";
+    private static final int ROWS = 50_000;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        createVersion1Database();
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void upgradeFromVersion1_keepsRowsAndReachesCurrentSchema() {
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        long start = SystemClock.elapsedRealtime();
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        Map<String, Long> timings = helper.getLastMigrationTimings();
+        for (Map.Entry<String, Long> step : timings.entrySet()) {
+            Log.i(TAG, "v" + step.getKey() + ": " + step.getValue() + " ms");
+        }
+        Log.i(TAG, "Upgraded " + ROWS + " rows in " + elapsed + " ms");
+
+        assertFalse(timings.isEmpty());
+        assertEquals(ROWS, DatabaseUtils.queryNumEntries(db, "images"));
+        assertEquals(ROWS, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM images_fts", null));
+        try (Cursor cursor = db.rawQuery("SELECT title, plant_disease, public_id FROM images LIMIT 1", null)) {
+            assertTrue(cursor.moveToFirst());
+        }
+        helper.close();
+    }
+
+    private void createVersion1Database() {
+        SQLiteDatabase db = context.openOrCreateDatabase(DB_NAME, Context.MODE_PRIVATE, null);
+        db.execSQL("CREATE TABLE images (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "image_path TEXT NOT NULL, description TEXT NOT NULL, timestamp INTEGER NOT NULL)");
+
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement(
+                "INSERT INTO images (image_path, description, timestamp) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                insert.bindString(1, "/storage/images/IMG_" + i + ".jpg");
+                insert.bindString(2, "Leaf spot sample " + i);
+                insert.bindLong(3, 1_600_000_000_000L + i * 60_000L);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        db.setVersion(1);
+        db.close();
+    }
+}
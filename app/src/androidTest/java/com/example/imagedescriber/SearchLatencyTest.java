@@ -0,0 +1,75 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/** Times ranked prefix searches over 100k rows against a 60 Hz frame budget. */
+@RunWith(AndroidJUnit4.class)
+public class SearchLatencyTest {
+
+    private static final String TAG = "SearchLatencyTest";
+    private static final int ROWS = 100_000;
+    private static final int RUNS = 20;
+    private static final long FRAME_NANOS = 16_666_667;
+    private static final String[] DISEASES = {"Leaf Blight", "Powdery Mildew", "Rust", "Leaf Curl",
+            "Bacterial Wilt", "Mosaic Virus", "Root Rot", "Downy Mildew", "Anthracnose", "Canker"};
+    private static final String[] QUERIES = {"farmer42", "Canker farmer7", "31337", "village12 rust"};
+
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        helper = new DatabaseHelper(context, null);
+        List<ImageEntry> entries = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            ImageEntry entry = new ImageEntry();
+            entry.setImagePath("/storage/images/IMG_" + i + ".jpg");
+            entry.setTitle("Sample " + i);
+            entry.setDescription("Field sample " + i);
+            entry.setPlantDisease(DISEASES[i % DISEASES.length]);
+            entry.setFarmerName("Farmer" + (i % 500));
+            entry.setLocation("Village" + (i % 120));
+            entry.setTimestamp(1_600_000_000_000L + i * 60_000L);
+            entries.add(entry);
+        }
+        assertEquals(ROWS, helper.saveImages(entries).getInsertedCount());
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void search_staysUnderOneFrame() {
+        for (String query : QUERIES) {
+            // Warm the page cache so the first run does not count the cold read
+            assertFalse(query, helper.searchImages(query, 200).isEmpty());
+
+            long[] nanos = new long[RUNS];
+            for (int i = 0; i < RUNS; i++) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                helper.searchImages(query, 200);
+                nanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+            }
+            long median = Timings.median(nanos);
+            Log.i(TAG, "\"" + query + "\" over " + ROWS + " rows: median " + Timings.millis(median));
+            assertTrue("\"" + query + "\" took " + Timings.millis(median), median < FRAME_NANOS);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.imagedescriber;
+
+import android.os.SystemClock;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal HTTP/1.1 stand-in for the Cloudinary API. Every call gets a success body unless
+ * failures were requested, connections are kept alive, and requests and accepted connections
+ * are counted so tests can check retries and connection reuse. A {@code public_id} sent with a
+ * request is echoed back, and Admin API resource listings are answered with the pages set
+ * through {@link #setResourcePages}.
+ */
+class StubCloudinaryServer implements AutoCloseable {
+
+    private static final Pattern MULTIPART_PUBLIC_ID =
+            Pattern.compile("name=\"public_id\"(?:\r\n[^\r\n]+)*\r\n\r\n([^\r\n]*)");
+    private static final Pattern FORM_PUBLIC_ID = Pattern.compile("(?:^|&)public_id=([^&]*)");
+    private static final Pattern CURSOR = Pattern.compile("[?&]next_cursor=(\\d+)");
+
+    private final ServerSocket socket = new ServerSocket(0);
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile long latencyMs;
+    private volatile String lastBody = "";
+    private volatile String lastPath;
+    private volatile String[] resourcePages = new String[0];
+    private final List<String> contentRanges = new CopyOnWriteArrayList<>();
+
+    StubCloudinaryServer() throws IOException {
+        Thread thread = new Thread(this::accept, "stub-cloudinary");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Client config pointing every Cloudinary endpoint at this server. */
+    Map<String, Object> clientConfig() {
+        Map<String, Object> config = new HashMap<>();
+        config.put("cloud_name", "test");
+        config.put("api_key", "key");
+        config.put("api_secret", "secret");
+        config.put("upload_prefix", "http://127.0.0.1:" + socket.getLocalPort());
+        return config;
+    }
+
+    void failNext(int count) {
+        failuresLeft.set(count);
+    }
+
+    void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    int getRequestCount() {
+        return requests.get();
+    }
+
+    int getConnectionCount() {
+        return connections.get();
+    }
+
+    String getLastBody() {
+        return lastBody;
+    }
+
+    String getLastPath() {
+        return lastPath;
+    }
+
+    /**
+     * Bodies for resource listings. A request is answered with the page whose index is its
+     * {@code next_cursor}, or the first page without one; a null page answers 500.
+     */
+    void setResourcePages(String... pages) {
+        resourcePages = pages;
+    }
+
+    /** Content-Range headers of chunked upload requests, in arrival order. */
+    List<String> getContentRanges() {
+        return new ArrayList<>(contentRanges);
+    }
+
+    private void accept() {
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                connections.incrementAndGet();
+                Thread thread = new Thread(() -> serve(client), "stub-cloudinary-conn");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // Closed by close()
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (Socket connection = client) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.ISO_8859_1));
+            OutputStream out = connection.getOutputStream();
+            while (true) {
+                Request request = readRequest(reader);
+                if (request == null) return;
+                lastBody = request.body;
+                lastPath = request.path;
+                if (request.contentRange != null) contentRanges.add(request.contentRange);
+                requests.incrementAndGet();
+                SystemClock.sleep(latencyMs);
+
+                boolean fail = failuresLeft.getAndDecrement() > 0;
+                String body;
+                String status;
+                if (fail) {
+                    body = "{\"error\":{\"message\":\"stub failure\"}}";
+                    status = "500 Internal Server Error";
+                } else if (request.path.contains("/resources/image")) {
+                    Matcher cursor = CURSOR.matcher(request.path);
+                    String[] pages = resourcePages;
+                    int index = cursor.find() ? Integer.parseInt(cursor.group(1)) : 0;
+                    String page = index < pages.length ? pages[index] : "{\"resources\":[]}";
+                    body = page != null ? page : "{\"error\":{\"message\":\"stub failure\"}}";
+                    status = page != null ? "200 OK" : "500 Internal Server Error";
+                } else {
+                    String publicId = publicId(request.body);
+                    body = "{\"result\":\"ok\",\"public_id\":\"" + publicId
+                            + "\",\"secure_url\":\"https://stub/" + publicId + ".jpg\"}";
+                    status = "200 OK";
+                }
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                out.write(("HTTP/1.1 " + status + "\r\nContent-Type: application/json\r\nContent-Length: "
+                        + bytes.length + "\r\nConnection: " + (request.close ? "close" : "keep-alive")
+                        + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                out.write(bytes);
+                out.flush();
+                if (request.close) return;
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    // From a multipart part or a form field; "stub" when the request names none
+    private static String publicId(String body) {
+        Matcher multipart = MULTIPART_PUBLIC_ID.matcher(body);
+        if (multipart.find()) return multipart.group(1);
+        Matcher form = FORM_PUBLIC_ID.matcher(body);
+        if (form.find()) {
+            try {
+                return URLDecoder.decode(form.group(1), "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return "stub";
+    }
+
+    private static class Request {
+        String path;
+        String body;
+        String contentRange;
+        boolean close;
+    }
+
+    // Returns null once the client closes the connection
+    private static Request readRequest(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) return null;
+
+        Request request = new Request();
+        String[] requestLine = line.split(" ");
+        request.path = requestLine.length > 1 ? requestLine[1] : "";
+        int contentLength = 0;
+        boolean chunked = false;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            String lower = line.toLowerCase();
+            if (lower.startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                chunked = true;
+            } else if (lower.startsWith("content-range:")) {
+                request.contentRange = line.substring(14).trim();
+            } else if (lower.startsWith("connection:") && lower.contains("close")) {
+                request.close = true;
+            }
+        }
+
+        StringBuilder body = new StringBuilder();
+        if (chunked) {
+            while ((line = reader.readLine()) != null) {
+                int size = Integer.parseInt(line.trim().split(";")[0], 16);
+                if (size == 0) {
+                    reader.readLine();
+                    break;
+                }
+                readFully(reader, body, size);
+                reader.readLine();
+            }
+        } else {
+            readFully(reader, body, contentLength);
+        }
+        request.body = body.toString();
+        return request;
+    }
+
+    private static void readFully(BufferedReader reader, StringBuilder into, int length) throws IOException {
+        char[] buffer = new char[8192];
+        while (length > 0) {
+            int read = reader.read(buffer, 0, Math.min(buffer.length, length));
+            if (read < 0) return;
+            into.append(buffer, 0, read);
+            length -= read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
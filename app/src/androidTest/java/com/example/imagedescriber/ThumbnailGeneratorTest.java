@@ -0,0 +1,90 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+/** Generates thumbnails for saved captures and checks they are small and recorded on the row. */
+@RunWith(AndroidJUnit4.class)
+public class ThumbnailGeneratorTest {
+
+    private Context context;
+    private DatabaseHelper helper;
+    private File dir;
+    private File capture;
+    private ThumbnailGenerator generator;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        helper = new DatabaseHelper(context, null);
+        dir = new File(context.getCacheDir(), "thumbs_test_" + System.nanoTime());
+        generator = new ThumbnailGenerator(context, helper, dir);
+
+        capture = new File(context.getCacheDir(), "thumb_source.jpg");
+        Bitmap bitmap = Bitmap.createBitmap(3000, 2000, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.GREEN);
+        try (OutputStream out = new FileOutputStream(capture)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        }
+        bitmap.recycle();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        dir.delete();
+        capture.delete();
+        helper.close();
+    }
+
+    @Test
+    public void generate_writesSmallThumbnailAndRecordsIt() {
+        long id = helper.saveImage(entry(capture.getAbsolutePath()));
+
+        assertTrue(generator.generate(helper.getImageById(id)));
+
+        String thumbPath = helper.getImageById(id).getThumbPath();
+        assertNotNull(thumbPath);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(thumbPath, options);
+        assertEquals(ThumbnailGenerator.THUMB_LONG_EDGE, Math.max(options.outWidth, options.outHeight));
+        assertTrue(new File(thumbPath).length() < capture.length());
+    }
+
+    @Test
+    public void backfill_coversRowsWithoutThumbnails() {
+        for (int i = 0; i < 3; i++) helper.saveImage(entry(capture.getAbsolutePath()));
+        helper.saveImage(entry("/missing/file.jpg"));
+
+        generator.backfill();
+
+        // The missing file has no source and stays without a thumbnail
+        assertEquals(1, helper.getImagesMissingThumbnail(0, 10).size());
+    }
+
+    private static ImageEntry entry(String path) {
+        ImageEntry entry = new ImageEntry();
+        entry.setImagePath(path);
+        entry.setTitle("Tomato");
+        entry.setTimestamp(System.currentTimeMillis());
+        return entry;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.imagedescriber;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/** Small helpers for the timing tests, which report medians so one slow run does not skew them. */
+final class Timings {
+
+    private Timings() {
+    }
+
+    static long median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    static String micros(long nanos) {
+        return String.format(Locale.US, "%.1f us", nanos / 1_000.0);
+    }
+
+    static String millis(long nanos) {
+        return String.format(Locale.US, "%.2f ms", nanos / 1_000_000.0);
+    }
+}
@@ -4,16 +4,13 @@ import android.Manifest;
 import android.app.ProgressDialog;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
 import android.location.Address;
 import android.location.Geocoder;
 import android.location.Location;
-import android.media.ExifInterface;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
+import android.util.Log;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
@@ -28,12 +25,9 @@ import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
 
 import com.bumptech.glide.Glide;
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
@@ -41,6 +35,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AddImageActivity extends AppCompatActivity {
 
@@ -52,33 +48,46 @@ public class AddImageActivity extends AppCompatActivity {
     private Button saveBtn, getLocationBtn;
 
     private ProgressDialog progressDialog;
-    private Bitmap selectedBitmap;
+    // Transcoded copy of the capture that is uploaded as-is
+    private File uploadFile;
+    // SHA-256 of the bytes behind this entry, set by the picker or once the capture is transcoded
+    private String contentHash;
+    private ImageTranscoder transcoder;
+    private final ExecutorService imageExecutor = Executors.newSingleThreadExecutor();
     private Uri cameraImageUri;
     private File imageFile;
 
     private DatabaseHelper dbHelper;
     private FusedLocationProviderClient fusedLocationClient;
 
-    private String cloudinaryUrlFromIntent = null;
     private String defaultTitleFromIntent = null;
-    private String publicIdFromIntent = null;
+    // Copy of a file picked on the main screen, handed to the outbox once the entry is saved
+    private File pickedFile;
+    private boolean saved;
 
     private final ActivityResultLauncher<Intent> cameraLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if (result.getResultCode() == RESULT_OK) {
-                    Bitmap bitmap = BitmapFactory.decodeFile(imageFile.getAbsolutePath());
-                    if (bitmap != null) {
+                    File source = imageFile;
+                    File target = new File(source.getParentFile(), source.getName().replace(".jpg", "_upload.jpg"));
+                    imageExecutor.execute(() -> {
                         try {
-                            bitmap = rotateImageIfRequired(bitmap, imageFile.getAbsolutePath());
-                            selectedBitmap = Bitmap.createScaledBitmap(bitmap, 1024, 1024, true);
-                            imagePreview.setImageBitmap(selectedBitmap);
+                            transcoder.transcode(source, target);
+                            String hash = UploadDeduplicator.sha256(target);
+                            runOnUiThread(() -> {
+                                uploadFile = target;
+                                contentHash = hash;
+                                // Already at upload size and upright; decoded into a pooled bitmap
+                                ImageLoader.getInstance(this).load(target.getAbsolutePath(), imagePreview,
+                                        R.drawable.image_placeholder_background, R.drawable.error_image);
+                            });
                         } catch (IOException e) {
-                            Toast.makeText(this, "Failed to process image", Toast.LENGTH_SHORT).show();
+                            Log.e("AddImageActivity", "Failed to process image", e);
+                            runOnUiThread(() ->
+                                    Toast.makeText(this, "Failed to process image", Toast.LENGTH_SHORT).show());
                         }
-                    } else {
-                        Toast.makeText(this, "Failed to load image", Toast.LENGTH_SHORT).show();
-                    }
+                    });
                 }
             });
 
@@ -87,8 +96,9 @@ public class AddImageActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_add_image);
 
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
+        transcoder = new ImageTranscoder(CountingBitmapPool.getInstance(this));
 
         initViews();
 
@@ -97,12 +107,13 @@ public class AddImageActivity extends AppCompatActivity {
         getLocationBtn.setOnClickListener(v -> checkLocationPermissionAndFetch());
 
         Intent intent = getIntent();
-        cloudinaryUrlFromIntent = intent.getStringExtra("IMAGE_PATH");
+        String pickedPath = intent.getStringExtra("PICKED_FILE");
         defaultTitleFromIntent = intent.getStringExtra("DEFAULT_TITLE");
-        publicIdFromIntent = intent.getStringExtra("PUBLIC_ID"); // ✅ New
+        contentHash = intent.getStringExtra("CONTENT_HASH");
 
-        if (cloudinaryUrlFromIntent != null) {
-            Glide.with(this).load(cloudinaryUrlFromIntent).into(imagePreview);
+        if (pickedPath != null) {
+            pickedFile = new File(pickedPath);
+            Glide.with(this).load(pickedFile).into(imagePreview);
             if (defaultTitleFromIntent != null && !defaultTitleFromIntent.trim().isEmpty()) {
                 String titleWithoutExtension = defaultTitleFromIntent.replaceAll("\\.[^.]+$", "");
                 plantNameInput.setText(titleWithoutExtension);
@@ -204,12 +215,23 @@ public class AddImageActivity extends AppCompatActivity {
         saveBtn.setEnabled(false);
         showProgressDialog("Saving data...");
 
-        if (cloudinaryUrlFromIntent != null) {
-            // File picker flow
-            saveToDatabase(cloudinaryUrlFromIntent, null, farmerName, plantName, disease, location, additionalDetails, description, publicIdFromIntent);
-        } else if (selectedBitmap != null) {
+        // Built once so the uploaded context and the saved row carry the same values and timestamp
+        ImageEntry entry = new ImageEntry();
+        entry.setTitle(plantName);
+        entry.setDescription(disease);
+        entry.setPlantDisease(disease);
+        entry.setTimestamp(System.currentTimeMillis());
+        entry.setLocation(location);
+        entry.setAdditionalDetails(additionalDetails);
+        entry.setFarmerName(farmerName);
+        entry.setContentHash(contentHash);
+
+        if (pickedFile != null) {
+            // File picker flow: saved locally, the outbox uploads it and resumes after failures
+            saveToDatabase(entry, null, pickedFile.getAbsolutePath(), null, false);
+        } else if (uploadFile != null) {
             // Camera flow
-            uploadToCloudinary(selectedBitmap, farmerName, plantName, disease, location, additionalDetails, description);
+            uploadToCloudinary(uploadFile, contentHash, entry);
         } else {
             hideProgressDialog();
             saveBtn.setEnabled(true);
@@ -217,66 +239,64 @@ public class AddImageActivity extends AppCompatActivity {
         }
     }
 
-    private void uploadToCloudinary(Bitmap bitmap, String farmerName, String plantName, String disease,
-                                    String location, String additionalDetails, String description) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, baos);
-        byte[] imageData = baos.toByteArray();
-
-        Cloudinary cloudinary = new Cloudinary(ObjectUtils.asMap(
-                "cloud_name", getString(R.string.cloudinary_cloud_name),
-                "api_key", getString(R.string.cloudinary_api_key),
-                "api_secret", getString(R.string.cloudinary_api_secret)
-        ));
+    private void uploadToCloudinary(File upload, String hash, ImageEntry entry) {
+        ChunkedUploader uploader = new ChunkedUploader(CloudinaryGateway.getInstance(this),
+                ChunkedUploader.DEFAULT_CHUNK_SIZE);
 
-        new Thread(() -> {
+        CloudIoExecutor.getInstance().execute(CloudIoExecutor.Priority.USER, () -> {
             try {
-                String timeStr = new SimpleDateFormat("dd-MM-yyyy HH:mm", Locale.getDefault()).format(new Date());
-                Map uploadResult = cloudinary.uploader().upload(imageData, ObjectUtils.asMap(
-                        "resource_type", "image",
-                        "context", String.format(
-                                "alt=%s|farmer_name=%s|plant_name=%s|disease=%s|location=%s|details=%s|timestamp=%s",
-                                description, farmerName, plantName, disease, location, additionalDetails, timeStr)
-                ));
-
+                ImageEntry existing = hash != null ? UploadDeduplicator.getInstance(this).findExisting(upload, hash) : null;
+                Map<String, Object> options = CloudinaryGateway.uploadOptions(null, CloudContext.format(entry));
+                Map uploadResult = existing != null
+                        // Same bytes already stored: Cloudinary copies them into this entry's own resource
+                        ? CloudinaryGateway.getInstance(this).upload(existing.getCloudinaryUrl(), options)
+                        : uploader.upload(upload, options, ChunkedUploader.newUploadId(), 0, null);
                 String uploadedUrl = (String) uploadResult.get("secure_url");
                 String publicId = (String) uploadResult.get("public_id");
 
-                runOnUiThread(() -> saveToDatabase(uploadedUrl,
-                        imageFile != null ? imageFile.getAbsolutePath() : null,
-                        farmerName, plantName, disease, location, additionalDetails, description, publicId));
+                // The uploaded copy becomes the entry's offline original
+                OfflineImageStore.getInstance(this).put(publicId, upload);
+                runOnUiThread(() -> saveToDatabase(entry, uploadedUrl,
+                        imageFile != null ? imageFile.getAbsolutePath() : null, publicId, true));
 
             } catch (Exception e) {
+                if (imageFile != null && imageFile.exists()) {
+                    // Keep the photo locally; saveToDatabase queues the upload for retry
+                    runOnUiThread(() -> saveToDatabase(entry, null, imageFile.getAbsolutePath(), null, false));
+                    return;
+                }
                 runOnUiThread(() -> {
                     hideProgressDialog();
                     saveBtn.setEnabled(true);
                     Toast.makeText(this, "Upload failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
                 });
             }
-        }).start();
+        });
     }
 
-    private void saveToDatabase(String cloudUrl, String localPath,
-                                String farmerName, String plantName, String disease,
-                                String location, String additionalDetails, String description,
-                                String publicId) {
-        ImageEntry entry = new ImageEntry();
+    private void saveToDatabase(ImageEntry entry, String cloudUrl, String localPath, String publicId,
+                                boolean contextUploaded) {
         entry.setCloudinaryUrl(cloudUrl);
         entry.setImagePath(localPath != null ? localPath : cloudUrl);
-        entry.setTitle(plantName);
-        entry.setDescription(disease);
-        entry.setTimestamp(System.currentTimeMillis());
-        entry.setLocation(location);
-        entry.setAdditionalDetails(additionalDetails);
-        entry.setFarmerName(farmerName);
         entry.setPublicId(publicId);
-        long insertedId = dbHelper.saveImage(entry);
+        long insertedId = dbHelper.saveImage(entry, contextUploaded);
+
+        boolean uploadPending = insertedId != -1 && cloudUrl == null && localPath != null;
+        if (uploadPending) {
+            // The transcoded copy stays on disk for the outbox; it is much smaller than the capture
+            File pending = uploadFile != null && uploadFile.exists() ? uploadFile : new File(localPath);
+            dbHelper.enqueueUpload(insertedId, pending);
+        }
 
         runOnUiThread(() -> {
             hideProgressDialog();
             saveBtn.setEnabled(true);
             if (insertedId != -1) {
-                Toast.makeText(this, "Saved successfully", Toast.LENGTH_SHORT).show();
+                saved = true;
+                String message = !uploadPending ? "Saved successfully"
+                        : pickedFile != null ? "Saved, uploading in the background"
+                        : "Saved offline, will upload when online";
+                Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
                 setResult(RESULT_OK);
                 finish();
             } else {
@@ -298,24 +318,14 @@ public class AddImageActivity extends AppCompatActivity {
         }
     }
 
-    private Bitmap rotateImageIfRequired(Bitmap img, String imagePath) throws IOException {
-        ExifInterface exif = new ExifInterface(imagePath);
-        int orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
-        Matrix matrix = new Matrix();
-        switch (orientation) {
-            case ExifInterface.ORIENTATION_ROTATE_90:
-                matrix.postRotate(90);
-                break;
-            case ExifInterface.ORIENTATION_ROTATE_180:
-                matrix.postRotate(180);
-                break;
-            case ExifInterface.ORIENTATION_ROTATE_270:
-                matrix.postRotate(270);
-                break;
-            default:
-                return img;
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        imageExecutor.shutdown();
+        // A picked file that was never saved has nothing left to upload it
+        if (isFinishing() && !saved && pickedFile != null) {
+            pickedFile.delete();
         }
-        return Bitmap.createBitmap(img, 0, 0, img.getWidth(), img.getHeight(), matrix, true);
     }
 
     @Override
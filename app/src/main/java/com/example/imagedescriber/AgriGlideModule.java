@@ -0,0 +1,39 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.AppGlideModule;
+
+/**
+ * App-wide Glide configuration: a memory cache and bitmap pool sized from the device's memory
+ * class, and a bounded disk cache in the app's cache directory, which Android may clear under
+ * storage pressure. The bitmap pool is also used by our own decodes via {@link CountingBitmapPool}.
+ */
+@GlideModule
+public class AgriGlideModule extends AppGlideModule {
+
+    static final String DISK_CACHE_DIR = "image_cache";
+    static final long DISK_CACHE_BYTES = 100L * 1024 * 1024;
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context).build();
+        builder.setMemoryCache(new LruResourceCache(calculator.getMemoryCacheSize()));
+        builder.setBitmapPool(new CountingBitmapPool(new LruBitmapPool(calculator.getBitmapPoolSize())));
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_DIR, DISK_CACHE_BYTES));
+    }
+
+    // Everything is configured here; no library modules to merge from the manifest
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.imagedescriber;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of {@link DatabaseHelper#saveImages}: the row id of every input entry (or -1 when it
+ * was not inserted) and the error for each failed position.
+ */
+public class BulkInsertResult {
+
+    private final long[] rowIds;
+    private final Map<Integer, String> failures = new LinkedHashMap<>();
+
+    public BulkInsertResult(int size) {
+        this.rowIds = new long[size];
+    }
+
+    void setRowId(int position, long rowId) {
+        rowIds[position] = rowId;
+    }
+
+    void addFailure(int position, String error) {
+        rowIds[position] = -1;
+        failures.put(position, error);
+    }
+
+    public long getRowId(int position) {
+        return rowIds[position];
+    }
+
+    public int getInsertedCount() {
+        return rowIds.length - failures.size();
+    }
+
+    public int getFailedCount() {
+        return failures.size();
+    }
+
+    /** Failed input positions mapped to the error message, in input order. */
+    public Map<Integer, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+}
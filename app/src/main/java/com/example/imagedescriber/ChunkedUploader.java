@@ -0,0 +1,91 @@
+package com.example.imagedescriber;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Uploads a file from disk in fixed-size chunks using Cloudinary's chunked upload protocol
+ * (X-Unique-Upload-Id plus Content-Range). At most one chunk is held in memory, and an upload
+ * that fails part way can be resumed from the last chunk Cloudinary confirmed by passing the
+ * same upload id and offset back in.
+ */
+public class ChunkedUploader {
+
+    private static final String TAG = "ChunkedUploader";
+
+    // Small enough that a typical transcoded photo spans several chunks, so a dropped connection
+    // costs at most one chunk on retry
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+    private static final long CHUNK_RETRY_DELAY_MS = 1_000;
+
+    public interface ProgressListener {
+        /** Called after Cloudinary confirmed every byte before {@code offset}. */
+        void onChunkConfirmed(String uploadId, long offset, long total);
+    }
+
+    private final CloudinaryGateway gateway;
+    private final int chunkSize;
+
+    public ChunkedUploader(CloudinaryGateway gateway, int chunkSize) {
+        this.gateway = gateway;
+        this.chunkSize = chunkSize;
+    }
+
+    public static String newUploadId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * Sends {@code file} starting at {@code offset}. Files that fit in one chunk are streamed in a
+     * single request. Each chunk is retried a few times before the failure is thrown; the
+     * listener has by then seen the offset to resume from.
+     *
+     * @return the response to the final chunk, which describes the uploaded resource
+     */
+    public Map upload(File file, Map<String, Object> options, String uploadId, long offset,
+                      ProgressListener listener) throws Exception {
+        long total = file.length();
+        if (total <= chunkSize) {
+            Map result = gateway.upload(file, options);
+            if (listener != null) listener.onChunkConfirmed(uploadId, total, total);
+            return result;
+        }
+
+        byte[] buffer = new byte[chunkSize];
+        Map result = null;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            while (offset < total) {
+                int length = (int) Math.min(chunkSize, total - offset);
+                input.seek(offset);
+                input.readFully(buffer, 0, length);
+                // The SDK sends whole arrays, so the short final chunk needs its own copy
+                byte[] chunk = length == chunkSize ? buffer : Arrays.copyOf(buffer, length);
+
+                result = sendChunk(chunk, options, uploadId, offset, total);
+                offset += length;
+                if (listener != null) listener.onChunkConfirmed(uploadId, offset, total);
+            }
+        }
+        return result;
+    }
+
+    private Map sendChunk(byte[] chunk, Map<String, Object> options, String uploadId, long offset, long total)
+            throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return gateway.uploadChunk(chunk, options, uploadId, offset, total);
+            } catch (Exception e) {
+                if (attempt >= MAX_CHUNK_ATTEMPTS) throw e;
+                Log.w(TAG, "Chunk at " + offset + " failed (attempt " + attempt + "): " + e.getMessage());
+                SystemClock.sleep(CHUNK_RETRY_DELAY_MS * attempt);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.imagedescriber;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The contextual metadata we attach to Cloudinary resources, in Cloudinary's
+ * {@code key=value|key=value} form. Values are escaped on the way out; on the way in both escaped
+ * values and the unescaped "null" placeholders written by older builds are accepted.
+ */
+public class CloudContext {
+
+    static final String ALT = "alt";
+    static final String FARMER_NAME = "farmer_name";
+    static final String PLANT_NAME = "plant_name";
+    static final String DISEASE = "disease";
+    static final String LOCATION = "location";
+    static final String DETAILS = "details";
+    static final String TIMESTAMP = "timestamp";
+
+    private static final String TIMESTAMP_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    // Older uploads from the camera screen used this shorter form
+    private static final String LEGACY_TIMESTAMP_FORMAT = "dd-MM-yyyy HH:mm";
+
+    private final Map<String, String> values;
+
+    private CloudContext(Map<String, String> values) {
+        this.values = values;
+    }
+
+    public static String format(ImageEntry entry) {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put(ALT, entry.getDescription());
+        values.put(FARMER_NAME, entry.getFarmerName());
+        values.put(PLANT_NAME, entry.getTitle());
+        values.put(DISEASE, entry.getPlantDisease());
+        values.put(LOCATION, entry.getLocation());
+        values.put(DETAILS, entry.getAdditionalDetails());
+        values.put(TIMESTAMP, new SimpleDateFormat(TIMESTAMP_FORMAT, Locale.getDefault()).format(new Date(entry.getTimestamp())));
+
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            if (out.length() > 0) out.append('|');
+            out.append(value.getKey()).append('=');
+            if (value.getValue() != null) out.append(escape(value.getValue()));
+        }
+        return out.toString();
+    }
+
+    public static CloudContext parse(String raw) {
+        Map<String, String> values = new LinkedHashMap<>();
+        if (raw == null) return new CloudContext(values);
+
+        StringBuilder key = new StringBuilder();
+        StringBuilder value = new StringBuilder();
+        StringBuilder current = key;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '\\' && i + 1 < raw.length()) {
+                current.append(raw.charAt(++i));
+            } else if (c == '=' && current == key) {
+                current = value;
+            } else if (c == '|') {
+                put(values, key.toString(), value.toString());
+                key.setLength(0);
+                value.setLength(0);
+                current = key;
+            } else {
+                current.append(c);
+            }
+        }
+        put(values, key.toString(), value.toString());
+        return new CloudContext(values);
+    }
+
+    /** Builds a context from the {@code context.custom} map of an Admin API response. */
+    public static CloudContext fromMap(Map<?, ?> custom) {
+        Map<String, String> values = new LinkedHashMap<>();
+        if (custom != null) {
+            for (Map.Entry<?, ?> entry : custom.entrySet()) {
+                put(values, String.valueOf(entry.getKey()), entry.getValue() == null ? null : String.valueOf(entry.getValue()));
+            }
+        }
+        return new CloudContext(values);
+    }
+
+    private static void put(Map<String, String> values, String key, String value) {
+        key = key.trim();
+        if (key.isEmpty()) return;
+        values.put(key, value == null || value.isEmpty() || "null".equals(value) ? null : value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("=", "\\=").replace("|", "\\|");
+    }
+
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    /** Capture time in epoch millis, or {@code fallback} when missing or unreadable. */
+    public long getTimestamp(long fallback) {
+        String raw = values.get(TIMESTAMP);
+        if (raw == null) return fallback;
+        for (String pattern : new String[]{TIMESTAMP_FORMAT, LEGACY_TIMESTAMP_FORMAT}) {
+            try {
+                SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.getDefault());
+                format.setLenient(false);
+                return format.parse(raw).getTime();
+            } catch (ParseException e) {
+                // Try the next pattern
+            }
+        }
+        return fallback;
+    }
+
+    /** Copies the metadata fields onto {@code entry}; the timestamp falls back to the entry's own. */
+    public void applyTo(ImageEntry entry) {
+        entry.setDescription(get(ALT));
+        entry.setFarmerName(get(FARMER_NAME));
+        entry.setTitle(get(PLANT_NAME));
+        entry.setPlantDisease(get(DISEASE));
+        entry.setLocation(get(LOCATION));
+        entry.setAdditionalDetails(get(DETAILS));
+        entry.setTimestamp(getTimestamp(entry.getTimestamp()));
+    }
+}
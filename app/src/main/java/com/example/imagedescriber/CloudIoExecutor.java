@@ -0,0 +1,178 @@
+package com.example.imagedescriber;
+
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared, bounded pool for Cloudinary network calls. USER tasks always run before queued
+ * BACKGROUND tasks, and background producers on other threads block once the background queue
+ * is full instead of piling up sockets. A pool thread never waits for a slot, since only pool
+ * threads can free one; its BACKGROUND submissions run inline when the queue is full. The main
+ * thread never waits either; its BACKGROUND submissions are dropped and counted.
+ */
+public class CloudIoExecutor {
+
+    private static final String TAG = "CloudIoExecutor";
+
+    public enum Priority { USER, BACKGROUND }
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 3;
+    public static final int DEFAULT_BACKGROUND_QUEUE_LIMIT = 32;
+
+    private static CloudIoExecutor instance;
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore backgroundSlots;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger queuedUser = new AtomicInteger();
+    private final AtomicInteger queuedBackground = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ThreadLocal<Boolean> onWorker = new ThreadLocal<>();
+
+    public static synchronized CloudIoExecutor getInstance() {
+        if (instance == null) {
+            instance = new CloudIoExecutor(DEFAULT_MAX_CONCURRENCY, DEFAULT_BACKGROUND_QUEUE_LIMIT);
+        }
+        return instance;
+    }
+
+    CloudIoExecutor(int maxConcurrency, int backgroundQueueLimit) {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> new Thread(() -> {
+                    onWorker.set(true);
+                    runnable.run();
+                }, "cloud-io-" + threadCount.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+        backgroundSlots = new Semaphore(backgroundQueueLimit);
+    }
+
+    /**
+     * Queues a network task. BACKGROUND tasks submitted from another background thread wait for
+     * a free queue slot. When no slot is free, those from a pool thread run inline on that thread
+     * and those from the main thread are dropped.
+     *
+     * @return false if the task was dropped
+     */
+    public boolean execute(Priority priority, Runnable task) {
+        boolean holdsSlot = false;
+        if (priority == Priority.BACKGROUND) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                if (!backgroundSlots.tryAcquire()) {
+                    dropped.incrementAndGet();
+                    Log.w(TAG, "Background queue full, dropping task submitted from the main thread");
+                    return false;
+                }
+                holdsSlot = true;
+            } else if (Boolean.TRUE.equals(onWorker.get())) {
+                if (!backgroundSlots.tryAcquire()) {
+                    // Waiting would deadlock once every pool thread is a producer on a full queue
+                    runCounted(task);
+                    return true;
+                }
+                holdsSlot = true;
+            } else {
+                backgroundSlots.acquireUninterruptibly();
+                holdsSlot = true;
+            }
+            queuedBackground.incrementAndGet();
+        } else {
+            queuedUser.incrementAndGet();
+        }
+        executor.execute(new PrioritizedTask(priority, sequence.incrementAndGet(), holdsSlot, task));
+        return true;
+    }
+
+    private void runCounted(Runnable task) {
+        try {
+            task.run();
+            completed.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            Log.e(TAG, "Cloud task failed", e);
+        }
+    }
+
+    /** Changes the number of concurrent network calls; takes effect as running tasks finish. */
+    public void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(maxConcurrency);
+            executor.setCorePoolSize(maxConcurrency);
+        } else {
+            executor.setCorePoolSize(maxConcurrency);
+            executor.setMaximumPoolSize(maxConcurrency);
+        }
+    }
+
+    public int getQueueDepth(Priority priority) {
+        return priority == Priority.USER ? queuedUser.get() : queuedBackground.get();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /** BACKGROUND tasks from the main thread that found the queue full and were not run. */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CloudIoExecutor[active=" + getActiveCount()
+                + ", queuedUser=" + queuedUser.get() + ", queuedBackground=" + queuedBackground.get()
+                + ", completed=" + completed.get() + ", failed=" + failed.get()
+                + ", dropped=" + dropped.get() + "]";
+    }
+
+    private class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        private final Priority priority;
+        private final long order;
+        private final boolean holdsSlot;
+        private final Runnable task;
+
+        PrioritizedTask(Priority priority, long order, boolean holdsSlot, Runnable task) {
+            this.priority = priority;
+            this.order = order;
+            this.holdsSlot = holdsSlot;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (priority == Priority.BACKGROUND) {
+                queuedBackground.decrementAndGet();
+                if (holdsSlot) backgroundSlots.release();
+            } else {
+                queuedUser.decrementAndGet();
+            }
+            runCounted(task);
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            if (priority != other.priority) {
+                return priority.compareTo(other.priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.example.imagedescriber;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable queue of Cloudinary writes. Operations are stored in SQLite before any network call and
+ * removed only after Cloudinary accepts them, so work survives process death. Failed operations
+ * are retried with exponential backoff.
+ *
+ * Each operation has an idempotency key: one pending metadata push and one pending delete per
+ * public_id, and one pending upload per image row. Enqueuing again under the same key replaces
+ * the pending payload instead of adding a second call.
+ *
+ * Metadata pushes are held for a coalescing window that restarts on every save of the same
+ * public_id, so a burst of edits becomes one call carrying the latest snapshot. Operations are
+ * sent one at a time by a single drain, so a newer snapshot always reaches Cloudinary after any
+ * older one and the last write wins.
+ */
+public class CloudOutbox {
+
+    private static final String TAG = "CloudOutbox";
+
+    static final String TABLE_OUTBOX = "cloud_outbox";
+    private static final String COLUMN_ID = "id";
+    private static final String COLUMN_OP = "op";
+    private static final String COLUMN_KEY = "idempotency_key";
+    private static final String COLUMN_PUBLIC_ID = "public_id";
+    private static final String COLUMN_IMAGE_ID = "image_id";
+    private static final String COLUMN_FILE_PATH = "file_path";
+    private static final String COLUMN_CONTEXT = "context";
+    private static final String COLUMN_REVISION = "revision";
+    private static final String COLUMN_ATTEMPTS = "attempts";
+    private static final String COLUMN_NEXT_ATTEMPT_AT = "next_attempt_at";
+    private static final String COLUMN_CREATED_AT = "created_at";
+    private static final String COLUMN_LAST_ERROR = "last_error";
+    private static final String COLUMN_CONTENT_VERSION = "content_version";
+    // Chunked upload session of a pending upload and the offset Cloudinary last confirmed
+    private static final String COLUMN_UPLOAD_ID = "upload_id";
+    private static final String COLUMN_UPLOAD_OFFSET = "upload_offset";
+
+    private static final String OP_METADATA = "metadata";
+    private static final String OP_DESTROY = "destroy";
+    private static final String OP_UPLOAD = "upload";
+
+    public static final long DEFAULT_BASE_BACKOFF_MS = 5_000;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 60 * 60 * 1000;
+    public static final long DEFAULT_COALESCE_WINDOW_MS = 2_000;
+    // A record that keeps being edited is still pushed after this many windows
+    private static final int MAX_COALESCE_WINDOWS = 5;
+    private static final int BATCH_SIZE = 20;
+
+    private static CloudOutbox instance;
+
+    private final DatabaseHelper dbHelper;
+    private final CloudinaryGateway gateway;
+    private final ChunkedUploader uploader;
+    private final UploadDeduplicator deduplicator;
+    private final OfflineImageStore store;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private volatile long coalesceWindowMs;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final ScheduledExecutorService retryTimer = Executors.newSingleThreadScheduledExecutor();
+    // The one wake-up for the next due operation; replaced rather than added to on every drain
+    private ScheduledFuture<?> pendingDrain;
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public static synchronized CloudOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new CloudOutbox(DatabaseHelper.getInstance(context),
+                    CloudinaryGateway.getInstance(context), UploadDeduplicator.getInstance(context),
+                    OfflineImageStore.getInstance(context), DEFAULT_BASE_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS, DEFAULT_COALESCE_WINDOW_MS);
+        }
+        return instance;
+    }
+
+    CloudOutbox(DatabaseHelper dbHelper, CloudinaryGateway gateway, UploadDeduplicator deduplicator,
+                OfflineImageStore store, long baseBackoffMs, long maxBackoffMs, long coalesceWindowMs) {
+        this.dbHelper = dbHelper;
+        this.gateway = gateway;
+        this.deduplicator = deduplicator;
+        this.store = store;
+        this.uploader = new ChunkedUploader(gateway, ChunkedUploader.DEFAULT_CHUNK_SIZE);
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.coalesceWindowMs = coalesceWindowMs;
+    }
+
+    /** Changes how long metadata pushes wait for further edits; 0 sends them immediately. */
+    public void setCoalesceWindowMs(long coalesceWindowMs) {
+        this.coalesceWindowMs = coalesceWindowMs;
+    }
+
+    static void createTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_OUTBOX + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_OP + " TEXT NOT NULL, "
+                + COLUMN_KEY + " TEXT NOT NULL UNIQUE, "
+                + COLUMN_PUBLIC_ID + " TEXT, "
+                + COLUMN_IMAGE_ID + " INTEGER, "
+                + COLUMN_FILE_PATH + " TEXT, "
+                + COLUMN_CONTEXT + " TEXT, "
+                + COLUMN_REVISION + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_NEXT_ATTEMPT_AT + " INTEGER NOT NULL, "
+                + COLUMN_CREATED_AT + " INTEGER NOT NULL, "
+                + COLUMN_LAST_ERROR + " TEXT"
+                + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_outbox_next_attempt ON " + TABLE_OUTBOX
+                + " (" + COLUMN_NEXT_ATTEMPT_AT + ")");
+    }
+
+    // Metadata pushes remember which content version of the image row they carry
+    static void addContentVersionColumn(SQLiteDatabase db) {
+        new SchemaMigrator.TableSchema(db, TABLE_OUTBOX).addColumn(db, COLUMN_CONTENT_VERSION, "INTEGER");
+    }
+
+    static void addUploadSessionColumns(SQLiteDatabase db) {
+        SchemaMigrator.TableSchema schema = new SchemaMigrator.TableSchema(db, TABLE_OUTBOX);
+        schema.addColumn(db, COLUMN_UPLOAD_ID, "TEXT");
+        schema.addColumn(db, COLUMN_UPLOAD_OFFSET, "INTEGER NOT NULL DEFAULT 0");
+    }
+
+    /**
+     * Queues a context update for an uploaded image, replacing any pending one. Once Cloudinary
+     * accepts it the image row is marked synced at {@code contentVersion}.
+     */
+    public void enqueueMetadata(long imageId, long contentVersion, String publicId, String context) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_PUBLIC_ID, publicId);
+        values.put(COLUMN_IMAGE_ID, imageId);
+        values.put(COLUMN_CONTENT_VERSION, contentVersion);
+        values.put(COLUMN_CONTEXT, context);
+        enqueue(OP_METADATA, OP_METADATA + ":" + publicId, values, coalesceWindowMs);
+    }
+
+    /** Queues deletion of a cloud resource; a pending metadata push for it is dropped. */
+    public void enqueueDestroy(String publicId) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.delete(TABLE_OUTBOX, COLUMN_KEY + " = ?", new String[]{OP_METADATA + ":" + publicId});
+
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_PUBLIC_ID, publicId);
+        enqueue(OP_DESTROY, OP_DESTROY + ":" + publicId, values, 0);
+    }
+
+    /**
+     * Queues the upload of a locally saved image with the context of its {@code contentVersion}.
+     * On success the row's cloudinary_url and public_id are filled in and it is marked synced at
+     * that version. Large files go up in chunks, and a retry resumes after the last chunk
+     * Cloudinary confirmed. If the same bytes are already in Cloudinary under another row, they
+     * are copied server-side into this row's own resource and the file is not sent.
+     */
+    public void enqueueUpload(long imageId, long contentVersion, File file, String context) {
+        ContentValues values = new ContentValues();
+        // Chosen up front so every retry targets the same cloud resource
+        values.put(COLUMN_PUBLIC_ID, "agridata_" + UUID.randomUUID());
+        values.put(COLUMN_IMAGE_ID, imageId);
+        values.put(COLUMN_CONTENT_VERSION, contentVersion);
+        values.put(COLUMN_FILE_PATH, file.getAbsolutePath());
+        values.put(COLUMN_CONTEXT, context);
+        // A replaced file starts a fresh chunked session
+        values.putNull(COLUMN_UPLOAD_ID);
+        values.put(COLUMN_UPLOAD_OFFSET, 0);
+        enqueue(OP_UPLOAD, OP_UPLOAD + ":" + imageId, values, 0);
+    }
+
+    /**
+     * Drops the pending upload of an image row and returns the file it would have sent, or null.
+     * Called inside the transaction that deletes the row.
+     */
+    String removeUpload(long imageId) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        String[] key = {OP_UPLOAD + ":" + imageId};
+        String filePath = null;
+        try (Cursor cursor = db.query(TABLE_OUTBOX, new String[]{COLUMN_FILE_PATH}, COLUMN_KEY + " = ?",
+                key, null, null, null)) {
+            if (cursor.moveToFirst()) filePath = cursor.getString(0);
+        }
+        db.delete(TABLE_OUTBOX, COLUMN_KEY + " = ?", key);
+        return filePath;
+    }
+
+    private void enqueue(String op, String key, ContentValues values, long delayMs) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        // The window restarts on every enqueue but never runs past MAX_COALESCE_WINDOWS from the
+        // first one; a retry already backing off further is not pulled forward or pushed back
+        try (SQLiteStatement bump = db.compileStatement("UPDATE " + TABLE_OUTBOX + " SET "
+                + COLUMN_REVISION + " = " + COLUMN_REVISION + " + 1, " + COLUMN_NEXT_ATTEMPT_AT + " = MAX("
+                + COLUMN_NEXT_ATTEMPT_AT + ", MIN(?, " + COLUMN_CREATED_AT + " + ?))"
+                + " WHERE " + COLUMN_KEY + " = ?")) {
+            bump.bindLong(1, now + delayMs);
+            bump.bindLong(2, delayMs * MAX_COALESCE_WINDOWS);
+            bump.bindString(3, key);
+            if (bump.executeUpdateDelete() > 0) {
+                coalesced.incrementAndGet();
+                // Keep the pending row (its created_at drives lag) and its public id, swap the payload
+                ContentValues payload = new ContentValues(values);
+                payload.remove(COLUMN_PUBLIC_ID);
+                if (payload.size() > 0) {
+                    db.update(TABLE_OUTBOX, payload, COLUMN_KEY + " = ?", new String[]{key});
+                }
+            } else {
+                values.put(COLUMN_OP, op);
+                values.put(COLUMN_KEY, key);
+                values.put(COLUMN_NEXT_ATTEMPT_AT, now + delayMs);
+                values.put(COLUMN_CREATED_AT, now);
+                db.insertOrThrow(TABLE_OUTBOX, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        drain();
+    }
+
+    /** Starts a drain on the background cloud lane unless one is already running. */
+    public void drain() {
+        if (!draining.compareAndSet(false, true)) return;
+        boolean queued = CloudIoExecutor.getInstance().execute(CloudIoExecutor.Priority.BACKGROUND, () -> {
+            try {
+                drainDue();
+            } finally {
+                draining.set(false);
+            }
+            scheduleNextDrain();
+        });
+        if (!queued) {
+            // Dropped from the main thread on a full queue; the timer thread waits for a slot
+            draining.set(false);
+            retryTimer.execute(this::drain);
+        }
+    }
+
+    private void drainDue() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        while (true) {
+            List<ContentValues> due = new ArrayList<>();
+            String query = "SELECT * FROM " + TABLE_OUTBOX + " WHERE " + COLUMN_NEXT_ATTEMPT_AT + " <= ?"
+                    + " ORDER BY " + COLUMN_ID + " LIMIT " + BATCH_SIZE;
+            try (Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(System.currentTimeMillis())})) {
+                while (cursor.moveToNext()) {
+                    ContentValues row = new ContentValues();
+                    DatabaseUtils.cursorRowToContentValues(cursor, row);
+                    due.add(row);
+                }
+            }
+            if (due.isEmpty()) return;
+
+            for (ContentValues row : due) {
+                process(db, row);
+            }
+        }
+    }
+
+    private void process(SQLiteDatabase db, ContentValues row) {
+        String op = row.getAsString(COLUMN_OP);
+        String publicId = row.getAsString(COLUMN_PUBLIC_ID);
+        long id = row.getAsLong(COLUMN_ID);
+        long revision = row.getAsLong(COLUMN_REVISION);
+        try {
+            switch (op) {
+                case OP_METADATA:
+                    gateway.updateContext(publicId, row.getAsString(COLUMN_CONTEXT));
+                    if (row.getAsLong(COLUMN_CONTENT_VERSION) != null) {
+                        dbHelper.markMetadataSynced(row.getAsLong(COLUMN_IMAGE_ID), row.getAsLong(COLUMN_CONTENT_VERSION));
+                    }
+                    break;
+                case OP_DESTROY:
+                    gateway.destroy(publicId);
+                    break;
+                case OP_UPLOAD:
+                    upload(db, row, publicId);
+                    break;
+                default:
+                    Log.w(TAG, "Dropping unknown outbox op " + op);
+            }
+            // A newer payload enqueued while this one was in flight bumps the revision and stays queued
+            db.delete(TABLE_OUTBOX, COLUMN_ID + " = ? AND " + COLUMN_REVISION + " = ?",
+                    new String[]{String.valueOf(id), String.valueOf(revision)});
+            succeeded.incrementAndGet();
+            Log.d(TAG, "✅ " + op + " done for " + publicId);
+        } catch (Exception e) {
+            int attempts = row.getAsInteger(COLUMN_ATTEMPTS) + 1;
+            long delay = backoffDelay(attempts, baseBackoffMs, maxBackoffMs);
+            db.execSQL("UPDATE " + TABLE_OUTBOX + " SET " + COLUMN_ATTEMPTS + " = ?, "
+                            + COLUMN_NEXT_ATTEMPT_AT + " = ?, " + COLUMN_LAST_ERROR + " = ? WHERE "
+                            + COLUMN_ID + " = ? AND " + COLUMN_REVISION + " = ?",
+                    new Object[]{attempts, System.currentTimeMillis() + delay, String.valueOf(e.getMessage()), id, revision});
+            failedAttempts.incrementAndGet();
+            Log.e(TAG, "❌ " + op + " failed for " + publicId + " (attempt " + attempts + "), retrying in " + delay + " ms: " + e.getMessage());
+        }
+    }
+
+    private void upload(SQLiteDatabase db, ContentValues row, String publicId) throws Exception {
+        File file = new File(row.getAsString(COLUMN_FILE_PATH));
+        if (!file.exists()) {
+            // Nothing left to send; retrying would only back off forever
+            Log.w(TAG, "Dropping upload of missing file " + file);
+            return;
+        }
+
+        String id = row.getAsString(COLUMN_ID);
+        String revision = row.getAsString(COLUMN_REVISION);
+        String uploadId = row.getAsString(COLUMN_UPLOAD_ID);
+        long offset = row.getAsLong(COLUMN_UPLOAD_OFFSET);
+        if (uploadId == null) {
+            uploadId = ChunkedUploader.newUploadId();
+            offset = 0;
+        } else if (offset > 0) {
+            Log.d(TAG, "Resuming upload of " + publicId + " at byte " + offset);
+        }
+
+        long imageId = row.getAsLong(COLUMN_IMAGE_ID);
+        Map<String, Object> options = CloudinaryGateway.uploadOptions(publicId, row.getAsString(COLUMN_CONTEXT));
+        ImageEntry existing = findUploadedCopy(imageId, file);
+        Map result;
+        if (existing != null) {
+            // Cloudinary copies the stored original into this row's own resource; only the URL is
+            // sent, and every row keeps a public_id of its own for metadata and deletes
+            result = gateway.upload(existing.getCloudinaryUrl(), options);
+        } else {
+            result = uploader.upload(file, options, uploadId, offset, (session, confirmed, total) -> {
+                ContentValues progress = new ContentValues();
+                progress.put(COLUMN_UPLOAD_ID, session);
+                progress.put(COLUMN_UPLOAD_OFFSET, confirmed);
+                db.update(TABLE_OUTBOX, progress, COLUMN_ID + " = ? AND " + COLUMN_REVISION + " = ?",
+                        new String[]{id, revision});
+            });
+        }
+        String uploadedId = (String) result.get("public_id");
+        if (!dbHelper.updateCloudLocation(imageId, (String) result.get("secure_url"),
+                uploadedId, row.getAsLong(COLUMN_CONTENT_VERSION))) {
+            // The row was deleted while the upload was in flight; nothing owns the new resource
+            Log.w(TAG, "Image " + imageId + " deleted during upload, destroying " + uploadedId);
+            enqueueDestroy(uploadedId);
+            file.delete();
+            return;
+        }
+        // The uploaded copy becomes the row's offline original, as after a camera upload
+        store.put(uploadedId, file);
+    }
+
+    // Another row already uploaded with the same bytes as the file, or null
+    private ImageEntry findUploadedCopy(long imageId, File file) {
+        ImageEntry image = dbHelper.getImageById(imageId);
+        if (image == null || image.getContentHash() == null) return null;
+        return deduplicator.findExisting(file, image.getContentHash());
+    }
+
+    private void scheduleNextDrain() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Long next = null;
+        try (Cursor cursor = db.rawQuery("SELECT MIN(" + COLUMN_NEXT_ATTEMPT_AT + ") FROM " + TABLE_OUTBOX, null)) {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) next = cursor.getLong(0);
+        }
+        synchronized (this) {
+            if (pendingDrain != null) pendingDrain.cancel(false);
+            pendingDrain = next == null ? null : retryTimer.schedule(this::drain,
+                    Math.max(0, next - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Delay before retry number {@code attempts}: base, 2x base, 4x base, ... capped at max. */
+    static long backoffDelay(int attempts, long baseMs, long maxMs) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 30);
+        return Math.min(maxMs, baseMs << shift);
+    }
+
+    public long getPendingCount() {
+        return DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), TABLE_OUTBOX);
+    }
+
+    /** Age of the oldest pending operation in milliseconds, or 0 when the outbox is empty. */
+    public long getLagMillis() {
+        long oldest = DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(),
+                "SELECT IFNULL(MIN(" + COLUMN_CREATED_AT + "), 0) FROM " + TABLE_OUTBOX, null);
+        return oldest == 0 ? 0 : System.currentTimeMillis() - oldest;
+    }
+
+    public long getSucceededCount() {
+        return succeeded.get();
+    }
+
+    public long getFailedAttemptCount() {
+        return failedAttempts.get();
+    }
+
+    /** Enqueues that were folded into an operation already pending under the same key. */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+}
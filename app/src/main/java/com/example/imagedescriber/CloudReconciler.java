@@ -0,0 +1,132 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Refreshes the local images table from Cloudinary. Resources are listed through the Admin API,
+ * page by page via {@code next_cursor}, and each page's changes are upserted in one transaction.
+ * The cursor is saved after every committed page, so a run that stopped part way resumes instead
+ * of starting over.
+ *
+ * The listing cannot be filtered by change time, so every run walks all pages. Each resource's
+ * {@code last_updated.updated_at}, which moves on context edits, is compared with the newest one
+ * applied by the previous run; resources last changed before it are skipped without touching
+ * the database. Resources that do not report it are always applied.
+ */
+public class CloudReconciler {
+
+    private static final String TAG = "CloudReconciler";
+
+    private static final String PREFS = "cloud_reconcile";
+    private static final String KEY_WATERMARK = "watermark";
+    private static final String KEY_CURSOR = "cursor";
+    private static final String KEY_PENDING_WATERMARK = "pending_watermark";
+
+    static final int PAGE_SIZE = 500;
+
+    private final DatabaseHelper dbHelper;
+    private final CloudinaryGateway gateway;
+    private final SharedPreferences prefs;
+
+    public CloudReconciler(Context context) {
+        this(DatabaseHelper.getInstance(context), CloudinaryGateway.getInstance(context),
+                context.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE));
+    }
+
+    CloudReconciler(DatabaseHelper dbHelper, CloudinaryGateway gateway, SharedPreferences prefs) {
+        this.dbHelper = dbHelper;
+        this.gateway = gateway;
+        this.prefs = prefs;
+    }
+
+    /** Runs until the listing is exhausted. Makes network calls; call from a worker thread. */
+    public ReconcileResult run() throws Exception {
+        String watermark = prefs.getString(KEY_WATERMARK, null);
+        String cursor = prefs.getString(KEY_CURSOR, null);
+        String newest = prefs.getString(KEY_PENDING_WATERMARK, watermark);
+        if (cursor != null) {
+            Log.d(TAG, "Resuming reconciliation at saved cursor");
+        }
+
+        ReconcileResult total = new ReconcileResult();
+        int pages = 0;
+        do {
+            Map response = gateway.listResources(cursor, PAGE_SIZE);
+            List<ImageEntry> entries = new ArrayList<>();
+            Object resources = response.get("resources");
+            if (resources instanceof List) {
+                for (Object resource : (List) resources) {
+                    // ISO-8601 UTC strings order the same as the instants they name
+                    String updatedAt = updatedAt((Map) resource);
+                    if (updatedAt != null && watermark != null && updatedAt.compareTo(watermark) < 0) continue;
+                    if (updatedAt != null && (newest == null || updatedAt.compareTo(newest) > 0)) {
+                        newest = updatedAt;
+                    }
+                    ImageEntry entry = toEntry((Map) resource);
+                    if (entry != null) entries.add(entry);
+                }
+            }
+            total.add(dbHelper.upsertFromCloud(entries));
+            pages++;
+
+            cursor = (String) response.get("next_cursor");
+            // Saved only after the page is committed, so a crash replays at most one page
+            prefs.edit()
+                    .putString(KEY_CURSOR, cursor)
+                    .putString(KEY_PENDING_WATERMARK, newest)
+                    .commit();
+        } while (cursor != null);
+
+        prefs.edit()
+                .putString(KEY_WATERMARK, newest)
+                .remove(KEY_CURSOR)
+                .remove(KEY_PENDING_WATERMARK)
+                .commit();
+        Log.d(TAG, "Reconciled " + pages + " page(s) up to " + newest + ": " + total);
+        return total;
+    }
+
+    // When the resource or its context last changed, or null if the listing does not say
+    private static String updatedAt(Map resource) {
+        Object lastUpdated = resource.get("last_updated");
+        return lastUpdated instanceof Map ? (String) ((Map) lastUpdated).get("updated_at") : null;
+    }
+
+    // Null for resources without a public id, which cannot be matched to a row
+    static ImageEntry toEntry(Map resource) {
+        String publicId = (String) resource.get("public_id");
+        if (publicId == null) return null;
+
+        ImageEntry entry = new ImageEntry();
+        entry.setPublicId(publicId);
+        entry.setCloudinaryUrl((String) resource.get("secure_url"));
+        entry.setImagePath(entry.getCloudinaryUrl());
+        entry.setTimestamp(parseCreatedAt((String) resource.get("created_at")));
+
+        Object context = resource.get("context");
+        Map custom = context instanceof Map ? (Map) ((Map) context).get("custom") : null;
+        CloudContext.fromMap(custom).applyTo(entry);
+        return entry;
+    }
+
+    private static long parseCreatedAt(String createdAt) {
+        if (createdAt == null) return System.currentTimeMillis();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return format.parse(createdAt).getTime();
+        } catch (ParseException e) {
+            return System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.imagedescriber;
+
+import android.util.Log;
+
+/**
+ * Process-wide HTTP settings for the Cloudinary SDK, which talks through HttpURLConnection.
+ * Keep-alive is switched on with an idle pool sized to the cloud executor, so consecutive calls
+ * reuse a connection instead of paying a new TLS handshake each time.
+ */
+public final class CloudTransport {
+
+    private static final String TAG = "CloudTransport";
+
+    // Idle connections kept per host; matches the number of concurrent cloud calls
+    static final int MAX_IDLE_CONNECTIONS = CloudIoExecutor.DEFAULT_MAX_CONCURRENCY;
+
+    private static boolean installed;
+
+    private CloudTransport() {
+    }
+
+    /** Applies the transport settings once; later calls are no-ops. */
+    public static synchronized void install() {
+        if (installed) return;
+        installed = true;
+
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        Log.d(TAG, "Keep-alive enabled, max idle connections " + MAX_IDLE_CONNECTIONS);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The app's single Cloudinary client and the calls made through it. One client per process keeps
+ * every request on the shared keep-alive transport. Pointing the client's {@code upload_prefix}
+ * at a local server lets tests run the same code against a stand-in.
+ */
+public class CloudinaryGateway {
+
+    private static CloudinaryGateway instance;
+
+    private final Cloudinary cloudinary;
+    private final AtomicLong requests = new AtomicLong();
+
+    /** Returns the app-scoped gateway, creating the client on first use. */
+    public static synchronized CloudinaryGateway getInstance(Context context) {
+        if (instance == null) {
+            Map<String, String> config = new HashMap<>();
+            config.put("cloud_name", context.getString(R.string.cloudinary_cloud_name));
+            config.put("api_key", context.getString(R.string.cloudinary_api_key));
+            config.put("api_secret", context.getString(R.string.cloudinary_api_secret));
+            instance = new CloudinaryGateway(new Cloudinary(config));
+        }
+        return instance;
+    }
+
+    public CloudinaryGateway(Cloudinary cloudinary) {
+        CloudTransport.install();
+        this.cloudinary = cloudinary;
+    }
+
+    public void updateContext(String publicId, String context) throws Exception {
+        requests.incrementAndGet();
+        cloudinary.uploader().explicit(publicId, ObjectUtils.asMap(
+                "type", "upload",
+                "context", context
+        ));
+    }
+
+    public void destroy(String publicId) throws Exception {
+        requests.incrementAndGet();
+        Map result = cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap());
+        Object status = result.get("result");
+        // "not found" means an earlier attempt already deleted it
+        if (!"ok".equals(status) && !"not found".equals(status)) {
+            throw new IllegalStateException("Destroy returned " + status);
+        }
+    }
+
+    /**
+     * Options for an upload under a fixed public id with overwrite, so a retried upload replaces
+     * the same resource instead of creating a duplicate. Either argument may be null.
+     */
+    public static Map<String, Object> uploadOptions(String publicId, String context) {
+        Map<String, Object> options = new HashMap<>();
+        options.put("resource_type", "image");
+        if (publicId != null) {
+            options.put("public_id", publicId);
+            options.put("overwrite", true);
+        }
+        if (context != null) options.put("context", context);
+        return options;
+    }
+
+    /** Uploads a file (streamed from disk) or byte array in one request. */
+    public Map upload(Object source, Map<String, Object> options) throws Exception {
+        requests.incrementAndGet();
+        return cloudinary.uploader().upload(source, options);
+    }
+
+    /**
+     * Sends bytes {@code offset} to {@code offset + chunk.length - 1} of a {@code total}-byte
+     * chunked upload. Every chunk of one upload carries the same upload id and options.
+     */
+    public Map uploadChunk(byte[] chunk, Map<String, Object> options, String uploadId, long offset, long total)
+            throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-Unique-Upload-Id", uploadId);
+        headers.put("Content-Range", "bytes " + offset + "-" + (offset + chunk.length - 1) + "/" + total);
+
+        Map<String, Object> chunkOptions = new HashMap<>(options);
+        chunkOptions.put("extra_headers", headers);
+        return upload(chunk, chunkOptions);
+    }
+
+    /**
+     * One page of uploaded images with their context, oldest first. Pass the previous page's
+     * {@code next_cursor} to continue, or null for the first page.
+     */
+    public Map listResources(String cursor, int maxResults) throws Exception {
+        requests.incrementAndGet();
+        Map<String, Object> options = new HashMap<>();
+        options.put("type", "upload");
+        options.put("resource_type", "image");
+        options.put("context", true);
+        options.put("max_results", maxResults);
+        options.put("direction", "asc");
+        if (cursor != null) options.put("next_cursor", cursor);
+        return cloudinary.api().resources(options);
+    }
+
+    public Map getResource(String publicId) throws Exception {
+        requests.incrementAndGet();
+        return cloudinary.api().resource(publicId, ObjectUtils.asMap("context", true));
+    }
+
+    public Cloudinary getCloudinary() {
+        return cloudinary;
+    }
+
+    /**
+     * Calls made through this gateway. Compared against the connections a server accepted, this
+     * shows how many calls reused a kept-alive connection.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CloudinaryGateway[requests=" + requests.get() + "]";
+    }
+}
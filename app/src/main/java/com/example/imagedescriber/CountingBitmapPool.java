@@ -0,0 +1,128 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The app's one bitmap pool, shared by Glide and by our own decodes through
+ * {@code BitmapFactory.Options.inBitmap}. Wraps Glide's size-bucketed LRU pool and counts how
+ * many requests were served by reuse and how many had to allocate. Glide forwards the
+ * platform's memory pressure callbacks to {@link #trimMemory(int)}.
+ */
+public class CountingBitmapPool implements BitmapPool {
+
+    private static final String TAG = "CountingBitmapPool";
+
+    private static CountingBitmapPool fallback;
+
+    private final BitmapPool delegate;
+    // Bitmaps currently sitting in the pool, to tell reuse from allocation on get
+    private final Set<Bitmap> pooled = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong returned = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** The pool installed by {@link AgriGlideModule}. */
+    public static synchronized CountingBitmapPool getInstance(Context context) {
+        BitmapPool pool = Glide.get(context).getBitmapPool();
+        if (pool instanceof CountingBitmapPool) return (CountingBitmapPool) pool;
+        // Only if the generated Glide module is missing; still shares Glide's pool
+        if (fallback == null) fallback = new CountingBitmapPool(pool);
+        return fallback;
+    }
+
+    public CountingBitmapPool(BitmapPool delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public long getMaxSize() {
+        return delegate.getMaxSize();
+    }
+
+    @Override
+    public void setSizeMultiplier(float sizeMultiplier) {
+        delegate.setSizeMultiplier(sizeMultiplier);
+    }
+
+    /** Returns {@code bitmap} for reuse; the caller must not touch it afterwards. */
+    @Override
+    public void put(Bitmap bitmap) {
+        if (bitmap == null) return;
+        delegate.put(bitmap);
+        // The LRU pool recycles bitmaps it will not keep (immutable, too large, or over budget)
+        if (bitmap.isRecycled()) {
+            rejected.incrementAndGet();
+        } else {
+            pooled.add(bitmap);
+            returned.incrementAndGet();
+        }
+    }
+
+    @NonNull
+    @Override
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        return count(delegate.get(width, height, config));
+    }
+
+    @NonNull
+    @Override
+    public Bitmap getDirty(int width, int height, Bitmap.Config config) {
+        return count(delegate.getDirty(width, height, config));
+    }
+
+    private Bitmap count(Bitmap bitmap) {
+        if (pooled.remove(bitmap)) {
+            reused.incrementAndGet();
+        } else {
+            allocated.incrementAndGet();
+        }
+        return bitmap;
+    }
+
+    @Override
+    public void clearMemory() {
+        delegate.clearMemory();
+        pooled.clear();
+    }
+
+    @Override
+    public void trimMemory(int level) {
+        delegate.trimMemory(level);
+        Log.d(TAG, "Trimmed at level " + level + "; " + this);
+    }
+
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    public long getAllocatedCount() {
+        return allocated.get();
+    }
+
+    public long getReturnedCount() {
+        return returned.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CountingBitmapPool{reused=" + reused + ", allocated=" + allocated
+                + ", returned=" + returned + ", rejected=" + rejected + ", maxSize=" + getMaxSize() + "}";
+    }
+}
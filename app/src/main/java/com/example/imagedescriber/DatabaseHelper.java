@@ -3,22 +3,29 @@ package com.example.imagedescriber;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 import android.util.Log;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
+import androidx.annotation.VisibleForTesting;
 
-import java.text.SimpleDateFormat;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     private static final String TAG = "DatabaseHelper";
 
     private static final String DATABASE_NAME = "image_store.db";
-    private static final int DATABASE_VERSION = 6;
+    private static final int DATABASE_VERSION = 15;
 
     private static final String TABLE_IMAGES = "images";
     private static final String COLUMN_ID = "id";
@@ -32,6 +39,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_CLOUDINARY_URL = "cloudinary_url";
     private static final String COLUMN_PUBLIC_ID = "public_id";
     private static final String COLUMN_PLANT_DISEASE = "plant_disease";
+    // content_version is bumped by trigger whenever synced metadata changes; last_synced_version
+    // is the version Cloudinary last acknowledged
+    private static final String COLUMN_CONTENT_VERSION = "content_version";
+    private static final String COLUMN_LAST_SYNCED_VERSION = "last_synced_version";
+    // SHA-256 of the uploaded bytes, used to reuse an existing upload for an identical file
+    private static final String COLUMN_CONTENT_HASH = "content_hash";
+    // Generated thumbnail file; list screens load only this
+    private static final String COLUMN_THUMB_PATH = "thumb_path";
 
     private static final String CREATE_TABLE_IMAGES = "CREATE TABLE " + TABLE_IMAGES + " ("
             + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -44,65 +59,309 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + COLUMN_ADDITIONAL_DETAILS + " TEXT, "
             + COLUMN_CLOUDINARY_URL + " TEXT, "
             + COLUMN_PUBLIC_ID + " TEXT, "
-            + COLUMN_PLANT_DISEASE + " TEXT"
+            + COLUMN_PLANT_DISEASE + " TEXT, "
+            + COLUMN_CONTENT_VERSION + " INTEGER NOT NULL DEFAULT 1, "
+            + COLUMN_LAST_SYNCED_VERSION + " INTEGER NOT NULL DEFAULT 0, "
+            + COLUMN_CONTENT_HASH + " TEXT, "
+            + COLUMN_THUMB_PATH + " TEXT"
             + ")";
 
-    private final Cloudinary cloudinary;
+    // Columns needed by list screens; skips the long free-text fields
+    private static final String SUMMARY_PROJECTION = COLUMN_ID + ", " + COLUMN_IMAGE_PATH + ", "
+            + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_TIMESTAMP + ", "
+            + COLUMN_CLOUDINARY_URL + ", " + COLUMN_PUBLIC_ID + ", " + COLUMN_THUMB_PATH;
 
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Full-text index over the searchable columns, stored as an external-content FTS4 table so the
+    // text itself lives only in images. FTS4 is used because FTS5 is not built into every
+    // platform SQLite we support.
+    private static final String TABLE_IMAGES_FTS = "images_fts";
+    private static final String FTS_COLUMNS = COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", "
+            + COLUMN_PLANT_DISEASE + ", " + COLUMN_FARMER_NAME + ", "
+            + COLUMN_LOCATION_NAME + ", " + COLUMN_ADDITIONAL_DETAILS;
+    private static final String FTS_NEW_VALUES = "new." + COLUMN_TITLE + ", new." + COLUMN_DESCRIPTION + ", new."
+            + COLUMN_PLANT_DISEASE + ", new." + COLUMN_FARMER_NAME + ", new."
+            + COLUMN_LOCATION_NAME + ", new." + COLUMN_ADDITIONAL_DETAILS;
+    // Relative weight of a hit in each FTS column, in FTS_COLUMNS order
+    private static final double[] FTS_COLUMN_WEIGHTS = {4.0, 2.0, 3.0, 2.0, 2.0, 1.0};
 
-        Map<String, String> config = new HashMap<>();
-        config.put("cloud_name", context.getString(R.string.cloudinary_cloud_name));
-        config.put("api_key", context.getString(R.string.cloudinary_api_key));
-        config.put("api_secret", context.getString(R.string.cloudinary_api_secret));
-        cloudinary = new Cloudinary(config);
+    // Secondary indexes for the main access paths: newest-first paging, disease filter, and
+    // grouping by farmer and by location
+    static final String INDEX_TIMESTAMP = "idx_images_timestamp";
+    static final String INDEX_DISEASE = "idx_images_disease_timestamp";
+    static final String INDEX_FARMER = "idx_images_farmer";
+    static final String INDEX_LOCATION = "idx_images_location";
+    static final String INDEX_UNSYNCED = "idx_images_unsynced";
+    static final String INDEX_PUBLIC_ID = "idx_images_public_id";
+    static final String INDEX_CONTENT_HASH = "idx_images_content_hash";
+    static final String INDEX_MISSING_THUMB = "idx_images_missing_thumb";
+    // Matches the partial index predicate so the backfill scan only visits rows it will change
+    static final String QUERY_MISSING_THUMB = "SELECT " + SUMMARY_PROJECTION + " FROM " + TABLE_IMAGES
+            + " WHERE " + COLUMN_THUMB_PATH + " IS NULL AND " + COLUMN_ID + " > ? ORDER BY " + COLUMN_ID + " LIMIT ?";
+    static final String QUERY_BY_CONTENT_HASH = "SELECT * FROM " + TABLE_IMAGES + " WHERE " + COLUMN_CONTENT_HASH
+            + " = ? AND " + COLUMN_PUBLIC_ID + " IS NOT NULL LIMIT 1";
+
+    // Columns that make up the Cloudinary context; changing any of them makes a row dirty
+    private static final String[] SYNCED_COLUMNS = {COLUMN_TITLE, COLUMN_DESCRIPTION, COLUMN_FARMER_NAME,
+            COLUMN_ADDITIONAL_DETAILS, COLUMN_PLANT_DISEASE, COLUMN_LOCATION_NAME, COLUMN_TIMESTAMP};
+    private static final String UNSYNCED_CONDITION = COLUMN_PUBLIC_ID + " IS NOT NULL AND "
+            + COLUMN_CONTENT_VERSION + " > " + COLUMN_LAST_SYNCED_VERSION;
+    // Matches the partial index predicate exactly so SQLite can use it
+    static final String QUERY_UNSYNCED = "SELECT * FROM " + TABLE_IMAGES + " WHERE " + UNSYNCED_CONDITION;
+
+    static final String QUERY_BY_DISEASE = "SELECT " + SUMMARY_PROJECTION + " FROM " + TABLE_IMAGES
+            + " WHERE " + COLUMN_PLANT_DISEASE + " = ? ORDER BY " + COLUMN_TIMESTAMP + " DESC";
+    // Uploaded entries of one farmer or location, newest first, for offline prefetch
+    static final String QUERY_UPLOADED_BY_FARMER = "SELECT " + SUMMARY_PROJECTION + " FROM " + TABLE_IMAGES
+            + " WHERE " + COLUMN_FARMER_NAME + " = ? AND " + COLUMN_PUBLIC_ID + " IS NOT NULL"
+            + " ORDER BY " + COLUMN_TIMESTAMP + " DESC LIMIT ?";
+    static final String QUERY_UPLOADED_BY_LOCATION = "SELECT " + SUMMARY_PROJECTION + " FROM " + TABLE_IMAGES
+            + " WHERE " + COLUMN_LOCATION_NAME + " = ? AND " + COLUMN_PUBLIC_ID + " IS NOT NULL"
+            + " ORDER BY " + COLUMN_TIMESTAMP + " DESC LIMIT ?";
+    static final String QUERY_COUNT_BY_FARMER = "SELECT " + COLUMN_FARMER_NAME + ", COUNT(*) FROM " + TABLE_IMAGES
+            + " GROUP BY " + COLUMN_FARMER_NAME;
+    static final String QUERY_COUNT_BY_LOCATION = "SELECT " + COLUMN_LOCATION_NAME + ", COUNT(*) FROM " + TABLE_IMAGES
+            + " GROUP BY " + COLUMN_LOCATION_NAME;
+
+    private static final SchemaMigrator MIGRATIONS = new SchemaMigrator(TABLE_IMAGES)
+            .add(2, "add title", (db, schema) ->
+                    schema.addColumn(db, COLUMN_TITLE, "TEXT"))
+            .add(3, "add location_name", (db, schema) ->
+                    schema.addColumn(db, COLUMN_LOCATION_NAME, "TEXT"))
+            .add(4, "add farmer and cloud columns", (db, schema) -> {
+                schema.addColumn(db, COLUMN_FARMER_NAME, "TEXT");
+                schema.addColumn(db, COLUMN_ADDITIONAL_DETAILS, "TEXT");
+                schema.addColumn(db, COLUMN_CLOUDINARY_URL, "TEXT");
+            })
+            .add(5, "add public_id", (db, schema) ->
+                    schema.addColumn(db, COLUMN_PUBLIC_ID, "TEXT"))
+            .add(6, "add plant_disease", (db, schema) ->
+                    schema.addColumn(db, COLUMN_PLANT_DISEASE, "TEXT"))
+            .add(7, "create search index", (db, schema) -> createSearchIndex(db))
+            .add(8, "create secondary indexes", (db, schema) -> createIndexes(db))
+            .add(9, "create disease statistics", (db, schema) -> createDiseaseStats(db))
+            .add(10, "create cloud outbox", (db, schema) -> CloudOutbox.createTable(db))
+            .add(11, "track metadata sync versions", (db, schema) -> {
+                schema.addColumn(db, COLUMN_CONTENT_VERSION, "INTEGER NOT NULL DEFAULT 1");
+                schema.addColumn(db, COLUMN_LAST_SYNCED_VERSION, "INTEGER NOT NULL DEFAULT 0");
+                CloudOutbox.addContentVersionColumn(db);
+                createSyncTracking(db);
+                narrowSearchTriggers(db);
+            })
+            .add(12, "add resumable upload sessions", (db, schema) -> CloudOutbox.addUploadSessionColumns(db))
+            .add(13, "index public_id", (db, schema) ->
+                    db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_PUBLIC_ID + " ON " + TABLE_IMAGES
+                            + " (" + COLUMN_PUBLIC_ID + ")"))
+            .add(14, "add content hash", (db, schema) -> {
+                schema.addColumn(db, COLUMN_CONTENT_HASH, "TEXT");
+                db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_CONTENT_HASH + " ON " + TABLE_IMAGES
+                        + " (" + COLUMN_CONTENT_HASH + ")");
+            })
+            .add(15, "add thumbnails", (db, schema) -> {
+                schema.addColumn(db, COLUMN_THUMB_PATH, "TEXT");
+                db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_MISSING_THUMB + " ON " + TABLE_IMAGES
+                        + " (" + COLUMN_ID + ") WHERE " + COLUMN_THUMB_PATH + " IS NULL");
+            });
+
+    // Per disease/location/period counts, kept current by triggers so dashboards read O(groups)
+    // rows. Missing disease or location is stored as '' because NULLs never match in the key.
+    private static final String TABLE_DISEASE_STATS = "disease_stats";
+    private static final String STATS_DISEASE = "plant_disease";
+    private static final String STATS_LOCATION = "location_name";
+    private static final String STATS_PERIOD = "period";
+    private static final String STATS_BUCKET = "bucket";
+    private static final String STATS_COUNT = "image_count";
+
+    private static DatabaseHelper instance;
+
+    private final Context appContext;
+    private final ImageEntryCache entryCache = new ImageEntryCache(ImageEntryCache.DEFAULT_MAX_BYTES);
+    private final List<ImageChange.Listener> changeListeners = new CopyOnWriteArrayList<>();
+    private long changeVersion = 0;
+    private Map<String, Long> lastMigrationTimings = Collections.emptyMap();
+    private CloudOutbox cloudOutbox;
+
+    /**
+     * Returns the process-wide helper. All screens share one connection pool so the page cache
+     * survives activity changes; the pool is never closed and is released with the process.
+     */
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DatabaseHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /** Opens a helper on another database file; {@code null} gives an in-memory database. */
+    @VisibleForTesting
+    DatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        appContext = context.getApplicationContext();
+        // WAL lets readers run concurrently with the single writer
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
+        // The table is created at the current shape; column steps are then no-ops and the
+        // remaining steps build indexes and triggers
         db.execSQL(CREATE_TABLE_IMAGES);
+        MIGRATIONS.migrate(db, 1, DATABASE_VERSION);
+    }
+
+    private static void createDiseaseStats(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_DISEASE_STATS + " ("
+                + STATS_PERIOD + " TEXT NOT NULL, "
+                + STATS_BUCKET + " TEXT NOT NULL, "
+                + STATS_DISEASE + " TEXT NOT NULL, "
+                + STATS_LOCATION + " TEXT NOT NULL, "
+                + STATS_COUNT + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + STATS_PERIOD + ", " + STATS_BUCKET + ", " + STATS_DISEASE + ", " + STATS_LOCATION + ")"
+                + ") WITHOUT ROWID");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS disease_stats_ai AFTER INSERT ON " + TABLE_IMAGES + " BEGIN "
+                + statsAdjust(DiseaseStat.Period.WEEK, "new", 1) + statsAdjust(DiseaseStat.Period.MONTH, "new", 1) + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS disease_stats_ad AFTER DELETE ON " + TABLE_IMAGES + " BEGIN "
+                + statsAdjust(DiseaseStat.Period.WEEK, "old", -1) + statsAdjust(DiseaseStat.Period.MONTH, "old", -1) + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS disease_stats_au AFTER UPDATE OF "
+                + COLUMN_PLANT_DISEASE + ", " + COLUMN_LOCATION_NAME + ", " + COLUMN_TIMESTAMP + " ON " + TABLE_IMAGES + " BEGIN "
+                + statsAdjust(DiseaseStat.Period.WEEK, "old", -1) + statsAdjust(DiseaseStat.Period.MONTH, "old", -1)
+                + statsAdjust(DiseaseStat.Period.WEEK, "new", 1) + statsAdjust(DiseaseStat.Period.MONTH, "new", 1) + "END");
+
+        // Count rows that existed before the table was created
+        db.execSQL("DELETE FROM " + TABLE_DISEASE_STATS);
+        for (DiseaseStat.Period period : DiseaseStat.Period.values()) {
+            db.execSQL("INSERT INTO " + TABLE_DISEASE_STATS + " SELECT '" + period.code + "', "
+                    + statsBucket(period, "") + ", COALESCE(" + COLUMN_PLANT_DISEASE + ", ''), COALESCE(" + COLUMN_LOCATION_NAME + ", ''), COUNT(*)"
+                    + " FROM " + TABLE_IMAGES + " GROUP BY 2, 3, 4");
+        }
+    }
+
+    // Trigger body statements that add delta to the stats row of the old/new image row
+    private static String statsAdjust(DiseaseStat.Period period, String row, int delta) {
+        String disease = "COALESCE(" + row + "." + COLUMN_PLANT_DISEASE + ", '')";
+        String location = "COALESCE(" + row + "." + COLUMN_LOCATION_NAME + ", '')";
+        String bucket = statsBucket(period, row + ".");
+        String match = " WHERE " + STATS_PERIOD + " = '" + period.code + "' AND " + STATS_BUCKET + " = " + bucket
+                + " AND " + STATS_DISEASE + " = " + disease + " AND " + STATS_LOCATION + " = " + location;
+
+        if (delta > 0) {
+            return "INSERT OR IGNORE INTO " + TABLE_DISEASE_STATS + " VALUES ('" + period.code + "', " + bucket + ", "
+                    + disease + ", " + location + ", 0); "
+                    + "UPDATE " + TABLE_DISEASE_STATS + " SET " + STATS_COUNT + " = " + STATS_COUNT + " + " + delta + match + "; ";
+        }
+        return "UPDATE " + TABLE_DISEASE_STATS + " SET " + STATS_COUNT + " = " + STATS_COUNT + " - " + (-delta) + match + "; "
+                + "DELETE FROM " + TABLE_DISEASE_STATS + match + " AND " + STATS_COUNT + " <= 0; ";
+    }
+
+    // UTC week or month of a millisecond timestamp column
+    private static String statsBucket(DiseaseStat.Period period, String prefix) {
+        String format = period == DiseaseStat.Period.WEEK ? "%Y-W%W" : "%Y-%m";
+        return "strftime('" + format + "', " + prefix + COLUMN_TIMESTAMP + " / 1000, 'unixepoch')";
+    }
+
+    private static void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TIMESTAMP + " ON " + TABLE_IMAGES
+                + " (" + COLUMN_TIMESTAMP + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_DISEASE + " ON " + TABLE_IMAGES
+                + " (" + COLUMN_PLANT_DISEASE + ", " + COLUMN_TIMESTAMP + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_FARMER + " ON " + TABLE_IMAGES
+                + " (" + COLUMN_FARMER_NAME + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_LOCATION + " ON " + TABLE_IMAGES
+                + " (" + COLUMN_LOCATION_NAME + ")");
+        db.execSQL("ANALYZE " + TABLE_IMAGES);
+    }
+
+    private static void createSyncTracking(SQLiteDatabase db) {
+        StringBuilder changed = new StringBuilder();
+        for (String column : SYNCED_COLUMNS) {
+            if (changed.length() > 0) changed.append(" OR ");
+            changed.append("old.").append(column).append(" IS NOT new.").append(column);
+        }
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS images_content_version_au AFTER UPDATE OF "
+                + TextUtils.join(", ", SYNCED_COLUMNS) + " ON " + TABLE_IMAGES
+                + " WHEN " + changed + " BEGIN "
+                + "UPDATE " + TABLE_IMAGES + " SET " + COLUMN_CONTENT_VERSION + " = " + COLUMN_CONTENT_VERSION + " + 1"
+                + " WHERE " + COLUMN_ID + " = new." + COLUMN_ID + "; END");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_UNSYNCED + " ON " + TABLE_IMAGES
+                + " (" + COLUMN_ID + ") WHERE " + UNSYNCED_CONDITION);
+    }
+
+    // The search triggers originally fired on every update; limit them to the indexed columns so
+    // version and cloud bookkeeping writes do not rewrite the FTS rows
+    private static void narrowSearchTriggers(SQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS images_fts_bu");
+        db.execSQL("DROP TRIGGER IF EXISTS images_fts_au");
+        db.execSQL("CREATE TRIGGER images_fts_bu BEFORE UPDATE OF " + FTS_COLUMNS + " ON " + TABLE_IMAGES + " BEGIN "
+                + "DELETE FROM " + TABLE_IMAGES_FTS + " WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER images_fts_au AFTER UPDATE OF " + FTS_COLUMNS + " ON " + TABLE_IMAGES + " BEGIN "
+                + "INSERT INTO " + TABLE_IMAGES_FTS + "(docid, " + FTS_COLUMNS + ") VALUES (new.rowid, " + FTS_NEW_VALUES + "); END");
+    }
+
+    private static void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_IMAGES_FTS
+                + " USING fts4(content=\"" + TABLE_IMAGES + "\", " + FTS_COLUMNS + ")");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS images_fts_bu BEFORE UPDATE ON " + TABLE_IMAGES + " BEGIN "
+                + "DELETE FROM " + TABLE_IMAGES_FTS + " WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS images_fts_bd BEFORE DELETE ON " + TABLE_IMAGES + " BEGIN "
+                + "DELETE FROM " + TABLE_IMAGES_FTS + " WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS images_fts_au AFTER UPDATE ON " + TABLE_IMAGES + " BEGIN "
+                + "INSERT INTO " + TABLE_IMAGES_FTS + "(docid, " + FTS_COLUMNS + ") VALUES (new.rowid, " + FTS_NEW_VALUES + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS images_fts_ai AFTER INSERT ON " + TABLE_IMAGES + " BEGIN "
+                + "INSERT INTO " + TABLE_IMAGES_FTS + "(docid, " + FTS_COLUMNS + ") VALUES (new.rowid, " + FTS_NEW_VALUES + "); END");
+
+        // Index rows that existed before the table was created
+        db.execSQL("INSERT INTO " + TABLE_IMAGES_FTS + "(" + TABLE_IMAGES_FTS + ") VALUES ('rebuild')");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        if (oldVersion < 2 && !columnExists(db, TABLE_IMAGES, COLUMN_TITLE))
-            db.execSQL("ALTER TABLE " + TABLE_IMAGES + " ADD COLUMN " + COLUMN_TITLE + " TEXT");
+        lastMigrationTimings = MIGRATIONS.migrate(db, oldVersion, newVersion);
+    }
 
-        if (oldVersion < 3 && !columnExists(db, TABLE_IMAGES, COLUMN_LOCATION_NAME))
-            db.execSQL("ALTER TABLE " + TABLE_IMAGES + " ADD COLUMN " + COLUMN_LOCATION_NAME + " TEXT");
+    @VisibleForTesting
+    synchronized void setCloudOutbox(CloudOutbox outbox) {
+        cloudOutbox = outbox;
+    }
 
-        if (oldVersion < 4) {
-            if (!columnExists(db, TABLE_IMAGES, COLUMN_FARMER_NAME))
-                db.execSQL("ALTER TABLE " + TABLE_IMAGES + " ADD COLUMN " + COLUMN_FARMER_NAME + " TEXT");
-            if (!columnExists(db, TABLE_IMAGES, COLUMN_ADDITIONAL_DETAILS))
-                db.execSQL("ALTER TABLE " + TABLE_IMAGES + " ADD COLUMN " + COLUMN_ADDITIONAL_DETAILS + " TEXT");
-            if (!columnExists(db, TABLE_IMAGES, COLUMN_CLOUDINARY_URL))
-                db.execSQL("ALTER TABLE " + TABLE_IMAGES + " ADD COLUMN " + COLUMN_CLOUDINARY_URL + " TEXT");
+    private synchronized CloudOutbox cloudOutbox() {
+        if (cloudOutbox == null) {
+            cloudOutbox = CloudOutbox.getInstance(appContext);
         }
+        return cloudOutbox;
+    }
 
-        if (oldVersion < 5 && !columnExists(db, TABLE_IMAGES, COLUMN_PUBLIC_ID))
-            db.execSQL("ALTER TABLE " + TABLE_IMAGES + " ADD COLUMN " + COLUMN_PUBLIC_ID + " TEXT");
+    /** Step timings of the most recent upgrade run by this helper, empty if none ran. */
+    @VisibleForTesting
+    Map<String, Long> getLastMigrationTimings() {
+        return lastMigrationTimings;
+    }
 
-        if (oldVersion < 6 && !columnExists(db, TABLE_IMAGES, COLUMN_PLANT_DISEASE))
-            db.execSQL("ALTER TABLE " + TABLE_IMAGES + " ADD COLUMN " + COLUMN_PLANT_DISEASE + " TEXT");
+    public void addChangeListener(ImageChange.Listener listener) {
+        changeListeners.add(listener);
     }
 
-    private boolean columnExists(SQLiteDatabase db, String tableName, String columnName) {
-        Cursor cursor = db.rawQuery("PRAGMA table_info(" + tableName + ")", null);
-        if (cursor != null) {
-            try {
-                while (cursor.moveToNext()) {
-                    String name = cursor.getString(cursor.getColumnIndexOrThrow("name"));
-                    if (columnName.equals(name)) {
-                        return true;
-                    }
-                }
-            } finally {
-                cursor.close();
-            }
+    public void removeChangeListener(ImageChange.Listener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /** Version of the last published change; 0 until the first write in this process. */
+    public synchronized long getChangeVersion() {
+        return changeVersion;
+    }
+
+    private void publishChange(ImageChange.Type type, long... ids) {
+        ImageChange change;
+        synchronized (this) {
+            change = new ImageChange(++changeVersion, type, ids);
+        }
+        for (ImageChange.Listener listener : changeListeners) {
+            listener.onImagesChanged(change);
         }
-        return false;
     }
 
     @Override
@@ -111,7 +370,40 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     public long saveImage(ImageEntry entry) {
+        return saveImage(entry, false);
+    }
+
+    /**
+     * @param contextUploaded true only when the entry's resource was uploaded carrying this
+     *                        entry's own context, so its first version is already in the cloud.
+     *                        Otherwise a row with a public_id is pushed by the next metadata sync.
+     */
+    public long saveImage(ImageEntry entry, boolean contextUploaded) {
         SQLiteDatabase db = getWritableDatabase();
+        long id = -1;
+        try {
+            id = db.insertOrThrow(TABLE_IMAGES, null, insertValues(entry, contextUploaded));
+            Log.d(TAG, "Image inserted with ID: " + id);
+            cacheInserted(entry, id);
+            publishChange(ImageChange.Type.INSERTED, id);
+        } catch (Exception e) {
+            Log.e(TAG, "Error inserting image: " + e.getMessage());
+        }
+        return id;
+    }
+
+    // Columns written on insert, in the order the bulk statement binds them
+    private static final String[] INSERT_COLUMNS = {
+            COLUMN_IMAGE_PATH, COLUMN_TITLE, COLUMN_DESCRIPTION, COLUMN_TIMESTAMP, COLUMN_LOCATION_NAME,
+            COLUMN_FARMER_NAME, COLUMN_ADDITIONAL_DETAILS, COLUMN_CLOUDINARY_URL, COLUMN_PUBLIC_ID,
+            COLUMN_PLANT_DISEASE, COLUMN_CONTENT_HASH, COLUMN_THUMB_PATH, COLUMN_LAST_SYNCED_VERSION
+    };
+
+    /**
+     * Column values for inserting {@code entry}, one per {@link #INSERT_COLUMNS} entry. Both
+     * insert paths go through here; the bulk path binds them in {@code INSERT_COLUMNS} order.
+     */
+    private static ContentValues insertValues(ImageEntry entry, boolean contextUploaded) {
         ContentValues values = new ContentValues();
         values.put(COLUMN_IMAGE_PATH, entry.getImagePath());
         values.put(COLUMN_TITLE, entry.getTitle());
@@ -123,20 +415,200 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_CLOUDINARY_URL, entry.getCloudinaryUrl());
         values.put(COLUMN_PUBLIC_ID, entry.getPublicId());
         values.put(COLUMN_PLANT_DISEASE, entry.getPlantDisease());
+        values.put(COLUMN_CONTENT_HASH, entry.getContentHash());
+        values.put(COLUMN_THUMB_PATH, entry.getThumbPath());
+        values.put(COLUMN_LAST_SYNCED_VERSION, contextUploaded ? 1 : 0);
+        return values;
+    }
 
-        long id = -1;
-        try {
-            id = db.insertOrThrow(TABLE_IMAGES, null, values);
-            Log.d(TAG, "Image inserted with ID: " + id);
+    private void cacheInserted(ImageEntry entry, long id) {
+        ImageEntry saved = new ImageEntry(entry);
+        saved.setId(id);
+        entryCache.put(saved);
+    }
+
+    /**
+     * Inserts all entries in one transaction through a single compiled statement. A row that fails
+     * (for example on a NOT NULL column) is recorded in the result and the rest of the batch still
+     * commits.
+     */
+    public BulkInsertResult saveImages(List<ImageEntry> entries) {
+        return saveImages(entries, false);
+    }
+
+    /** As {@link #saveImage(ImageEntry, boolean)}, with one flag for the whole batch. */
+    public BulkInsertResult saveImages(List<ImageEntry> entries, boolean contextUploaded) {
+        BulkInsertResult result = new BulkInsertResult(entries.size());
+        if (entries.isEmpty()) return result;
+
+        SQLiteDatabase db = getWritableDatabase();
+        String sql = "INSERT INTO " + TABLE_IMAGES + " (" + TextUtils.join(", ", INSERT_COLUMNS) + ") VALUES ("
+                + TextUtils.join(", ", Collections.nCopies(INSERT_COLUMNS.length, "?")) + ")";
+
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement(sql)) {
+            for (int i = 0; i < entries.size(); i++) {
+                ContentValues values = insertValues(entries.get(i), contextUploaded);
+                insert.clearBindings();
+                for (int c = 0; c < INSERT_COLUMNS.length; c++) {
+                    DatabaseUtils.bindObjectToProgram(insert, c + 1, values.get(INSERT_COLUMNS[c]));
+                }
+                try {
+                    result.setRowId(i, insert.executeInsert());
+                } catch (SQLException e) {
+                    // SQLite only rolls back the failing statement, the transaction stays usable
+                    result.addFailure(i, e.getMessage());
+                }
+            }
+            db.setTransactionSuccessful();
         } catch (Exception e) {
-            Log.e(TAG, "Error inserting image: " + e.getMessage());
+            // The transaction is rolled back, so nothing from this batch was kept
+            Log.e(TAG, "Error in bulk insert: " + e.getMessage());
+            for (int i = 0; i < entries.size(); i++) {
+                result.addFailure(i, e.getMessage());
+            }
         } finally {
-            db.close();
+            db.endTransaction();
+        }
+
+        Log.d(TAG, "Bulk insert: " + result.getInsertedCount() + " inserted, " + result.getFailedCount() + " failed");
+        if (result.getInsertedCount() > 0) {
+            long[] ids = new long[result.getInsertedCount()];
+            int next = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                if (result.getRowId(i) == -1) continue;
+                ids[next++] = result.getRowId(i);
+                cacheInserted(entries.get(i), result.getRowId(i));
+            }
+            publishChange(ImageChange.Type.INSERTED, ids);
+        }
+        return result;
+    }
+
+    /**
+     * Applies one page of cloud resources in a single transaction, matching rows by public_id.
+     * Each entry carries the public id, the secure URL in both path columns, and its parsed
+     * context. Rows with local edits that have not been pushed yet keep the local values.
+     */
+    public ReconcileResult upsertFromCloud(List<ImageEntry> entries) {
+        ReconcileResult result = new ReconcileResult();
+        if (entries.isEmpty()) return result;
+
+        List<Long> inserted = new ArrayList<>();
+        List<Long> updated = new ArrayList<>();
+        SQLiteDatabase db = getWritableDatabase();
+        String insertSql = "INSERT INTO " + TABLE_IMAGES + " ("
+                + COLUMN_IMAGE_PATH + ", " + COLUMN_CLOUDINARY_URL + ", " + COLUMN_PUBLIC_ID + ", "
+                + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_FARMER_NAME + ", "
+                + COLUMN_ADDITIONAL_DETAILS + ", " + COLUMN_PLANT_DISEASE + ", " + COLUMN_LOCATION_NAME + ", "
+                + COLUMN_TIMESTAMP + ", " + COLUMN_LAST_SYNCED_VERSION + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 1)";
+        String updateSql = "UPDATE " + TABLE_IMAGES + " SET "
+                + COLUMN_CLOUDINARY_URL + " = ?, " + COLUMN_TITLE + " = ?, " + COLUMN_DESCRIPTION + " = ?, "
+                + COLUMN_FARMER_NAME + " = ?, " + COLUMN_ADDITIONAL_DETAILS + " = ?, " + COLUMN_PLANT_DISEASE + " = ?, "
+                + COLUMN_LOCATION_NAME + " = ?, " + COLUMN_TIMESTAMP + " = ? WHERE " + COLUMN_ID + " = ?";
+        // The version trigger has bumped content_version; the cloud already holds that version
+        String markSql = "UPDATE " + TABLE_IMAGES + " SET " + COLUMN_LAST_SYNCED_VERSION + " = "
+                + COLUMN_CONTENT_VERSION + " WHERE " + COLUMN_ID + " = ?";
+        String findSql = "SELECT * FROM " + TABLE_IMAGES + " WHERE " + COLUMN_PUBLIC_ID + " = ? LIMIT 1";
+
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement(insertSql);
+             SQLiteStatement update = db.compileStatement(updateSql);
+             SQLiteStatement mark = db.compileStatement(markSql)) {
+            for (ImageEntry entry : entries) {
+                ImageEntry local = null;
+                long contentVersion = 0, syncedVersion = 0;
+                try (Cursor cursor = db.rawQuery(findSql, new String[]{entry.getPublicId()})) {
+                    if (cursor.moveToFirst()) {
+                        local = new RowMapper(cursor).map(cursor);
+                        contentVersion = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_CONTENT_VERSION));
+                        syncedVersion = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_LAST_SYNCED_VERSION));
+                    }
+                }
+                // description is NOT NULL locally but optional in the cloud context
+                String description = entry.getDescription() != null ? entry.getDescription() : "";
+                // Context timestamps are only kept to the minute or second, so a close match keeps
+                // the local millisecond value
+                long timestamp = local != null && Math.abs(local.getTimestamp() - entry.getTimestamp()) < 60_000
+                        ? local.getTimestamp() : entry.getTimestamp();
+
+                if (local == null) {
+                    insert.clearBindings();
+                    bindNullable(insert, 1, entry.getCloudinaryUrl());
+                    bindNullable(insert, 2, entry.getCloudinaryUrl());
+                    bindNullable(insert, 3, entry.getPublicId());
+                    bindNullable(insert, 4, entry.getTitle());
+                    insert.bindString(5, description);
+                    bindNullable(insert, 6, entry.getFarmerName());
+                    bindNullable(insert, 7, entry.getAdditionalDetails());
+                    bindNullable(insert, 8, entry.getPlantDisease());
+                    bindNullable(insert, 9, entry.getLocation());
+                    insert.bindLong(10, entry.getTimestamp());
+                    inserted.add(insert.executeInsert());
+                    result.addInserted();
+                } else if (contentVersion > syncedVersion) {
+                    result.addSkipped();
+                } else if (Objects.equals(local.getCloudinaryUrl(), entry.getCloudinaryUrl())
+                        && Objects.equals(local.getTitle(), entry.getTitle())
+                        && Objects.equals(local.getDescription(), description)
+                        && Objects.equals(local.getFarmerName(), entry.getFarmerName())
+                        && Objects.equals(local.getAdditionalDetails(), entry.getAdditionalDetails())
+                        && Objects.equals(local.getPlantDisease(), entry.getPlantDisease())
+                        && Objects.equals(local.getLocation(), entry.getLocation())
+                        && local.getTimestamp() == timestamp) {
+                    result.addUnchanged();
+                } else {
+                    update.clearBindings();
+                    bindNullable(update, 1, entry.getCloudinaryUrl());
+                    bindNullable(update, 2, entry.getTitle());
+                    update.bindString(3, description);
+                    bindNullable(update, 4, entry.getFarmerName());
+                    bindNullable(update, 5, entry.getAdditionalDetails());
+                    bindNullable(update, 6, entry.getPlantDisease());
+                    bindNullable(update, 7, entry.getLocation());
+                    update.bindLong(8, timestamp);
+                    update.bindLong(9, local.getId());
+                    update.executeUpdateDelete();
+                    mark.bindLong(1, local.getId());
+                    mark.executeUpdateDelete();
+                    updated.add(local.getId());
+                    result.addUpdated();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        for (long id : updated) {
+            entryCache.remove(id);
+        }
+        if (!inserted.isEmpty()) publishChange(ImageChange.Type.INSERTED, toArray(inserted));
+        if (!updated.isEmpty()) publishChange(ImageChange.Type.UPDATED, toArray(updated));
+        return result;
+    }
+
+    private static long[] toArray(List<Long> ids) {
+        long[] array = new long[ids.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
         }
-        return id;
     }
 
     public boolean updateImageDetailsFull(long id, String title, String description, String farmerName, String additionalDetails, String plantDisease, String location, long timestamp) {
+        // Usually a cache hit; supplies the columns this update does not touch
+        ImageEntry entry = getImageById(id);
+        if (entry == null) return false;
+
         SQLiteDatabase db = getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(COLUMN_TITLE, title);
@@ -148,57 +620,138 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_TIMESTAMP, timestamp);
 
         int rows = db.update(TABLE_IMAGES, values, COLUMN_ID + "=?", new String[]{String.valueOf(id)});
-        db.close();
 
         if (rows > 0) {
-            ImageEntry entry = getImageById(id);
-            if (entry != null && entry.getPublicId() != null) {
-                updateCloudinaryMetadata(entry);
+            entry.setTitle(title);
+            entry.setDescription(description);
+            entry.setFarmerName(farmerName);
+            entry.setAdditionalDetails(additionalDetails);
+            entry.setPlantDisease(plantDisease);
+            entry.setLocation(location);
+            entry.setTimestamp(timestamp);
+            entryCache.put(entry);
+            publishChange(ImageChange.Type.UPDATED, id);
+
+            long[] versions = getSyncVersions(db, id);
+            // Rewriting identical values leaves the row clean and costs no network call
+            if (entry.getPublicId() != null && versions[0] > versions[1]) {
+                updateCloudinaryMetadata(entry, versions[0]);
             }
+        } else {
+            entryCache.remove(id);
         }
 
         return rows > 0;
     }
 
-    private void updateCloudinaryMetadata(ImageEntry entry) {
-        String readableTimestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault())
-                .format(new Date(entry.getTimestamp()));
+    /**
+     * Queues the upload of a locally saved row together with its current metadata. The upload
+     * carries that content version, so the row is marked synced at it once Cloudinary has the file.
+     */
+    public void enqueueUpload(long id, File file) {
+        // Versions first: an edit landing in between only leaves the row dirty, never wrongly clean
+        long contentVersion = getSyncVersions(getReadableDatabase(), id)[0];
+        ImageEntry entry = getImageById(id);
+        if (entry == null) return;
+        cloudOutbox().enqueueUpload(id, contentVersion, file, CloudContext.format(entry));
+    }
+
+    /**
+     * Records where a locally saved image ended up after a deferred upload, and that the upload
+     * carried metadata {@code syncedVersion}. Edits made while the upload was queued are pushed.
+     */
+    public boolean updateCloudLocation(long id, String cloudinaryUrl, String publicId, long syncedVersion) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_CLOUDINARY_URL, cloudinaryUrl);
+        values.put(COLUMN_PUBLIC_ID, publicId);
 
-        String context = String.format("alt=%s|farmer_name=%s|plant_name=%s|disease=%s|location=%s|details=%s|timestamp=%s",
-                entry.getDescription(),
-                entry.getFarmerName(),
-                entry.getTitle(),
-                entry.getPlantDisease(),
-                entry.getLocation(),
-                entry.getAdditionalDetails(),
-                readableTimestamp);
+        int rows = db.update(TABLE_IMAGES, values, COLUMN_ID + "=?", new String[]{String.valueOf(id)});
+        entryCache.remove(id);
+        if (rows > 0) {
+            markMetadataSynced(id, syncedVersion);
+            publishChange(ImageChange.Type.UPDATED, id);
 
-        new Thread(() -> {
-            try {
-                cloudinary.uploader().explicit(entry.getPublicId(), ObjectUtils.asMap(
-                        "type", "upload",
-                        "context", context
-                ));
-                Log.d(TAG, "✅ Cloudinary metadata updated for: " + entry.getPublicId());
-            } catch (Exception e) {
-                Log.e(TAG, "❌ Failed to update Cloudinary metadata: " + e.getMessage());
+            long[] versions = getSyncVersions(db, id);
+            ImageEntry entry = versions[0] > versions[1] ? getImageById(id) : null;
+            if (entry != null) {
+                updateCloudinaryMetadata(entry, versions[0]);
             }
-        }).start();
+        }
+        return rows > 0;
+    }
+
+    // {content_version, last_synced_version} of a row
+    private static long[] getSyncVersions(SQLiteDatabase db, long id) {
+        try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_CONTENT_VERSION + ", " + COLUMN_LAST_SYNCED_VERSION
+                + " FROM " + TABLE_IMAGES + " WHERE " + COLUMN_ID + " = ?", new String[]{String.valueOf(id)})) {
+            if (!cursor.moveToFirst()) return new long[]{0, 0};
+            return new long[]{cursor.getLong(0), cursor.getLong(1)};
+        }
+    }
+
+    /** Records a generated thumbnail; not a metadata change, so nothing is pushed to the cloud. */
+    public boolean updateThumbPath(long id, String thumbPath) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_THUMB_PATH, thumbPath);
+        int rows = getWritableDatabase().update(TABLE_IMAGES, values, COLUMN_ID + "=?", new String[]{String.valueOf(id)});
+        entryCache.remove(id);
+        if (rows > 0) {
+            publishChange(ImageChange.Type.UPDATED, id);
+        }
+        return rows > 0;
+    }
+
+    /** Up to {@code limit} entries without a thumbnail and with an id above {@code afterId}, by id. */
+    public List<ImageEntry> getImagesMissingThumbnail(long afterId, int limit) {
+        return querySummaries(QUERY_MISSING_THUMB, new String[]{String.valueOf(afterId), String.valueOf(limit)});
+    }
+
+    /**
+     * Records that Cloudinary holds {@code version} of the row's metadata. An older acknowledgement
+     * arriving late never moves the marker backwards.
+     */
+    public void markMetadataSynced(long id, long version) {
+        getWritableDatabase().execSQL("UPDATE " + TABLE_IMAGES + " SET " + COLUMN_LAST_SYNCED_VERSION + " = ?"
+                        + " WHERE " + COLUMN_ID + " = ? AND " + COLUMN_LAST_SYNCED_VERSION + " < ?",
+                new Object[]{version, id, version});
     }
 
-    public void syncAllMetadataToCloudinary() {
-        List<ImageEntry> entries = getAllImages();
-        for (ImageEntry entry : entries) {
-            if (entry.getCloudinaryUrl() != null && entry.getPublicId() != null) {
-                updateCloudinaryMetadata(entry);
+    private void updateCloudinaryMetadata(ImageEntry entry, long contentVersion) {
+        String context = CloudContext.format(entry);
+        cloudOutbox().enqueueMetadata(entry.getId(), contentVersion, entry.getPublicId(), context);
+    }
+
+    /**
+     * Queues a metadata push for every uploaded entry whose metadata changed since Cloudinary last
+     * acknowledged it; unchanged entries cost no network call. Call from a worker thread: it
+     * blocks while the background upload queue is full.
+     */
+    public MetadataSyncResult syncAllMetadataToCloudinary() {
+        SQLiteDatabase db = getReadableDatabase();
+        long uploaded = DatabaseUtils.queryNumEntries(db, TABLE_IMAGES, COLUMN_PUBLIC_ID + " IS NOT NULL");
+
+        int pushed = 0;
+        try (Cursor cursor = db.rawQuery(QUERY_UNSYNCED, null)) {
+            RowMapper mapper = new RowMapper(cursor);
+            int version = cursor.getColumnIndexOrThrow(COLUMN_CONTENT_VERSION);
+            while (cursor.moveToNext()) {
+                updateCloudinaryMetadata(mapper.map(cursor), cursor.getLong(version));
+                pushed++;
             }
+        } catch (Exception e) {
+            Log.e(TAG, "Error syncing metadata: " + e.getMessage());
         }
+
+        MetadataSyncResult result = new MetadataSyncResult(pushed, (int) uploaded - pushed);
+        Log.d(TAG, "Metadata sync: " + result);
+        return result;
     }
 
     public void fetchCloudinaryMetadata(String publicId) {
-        new Thread(() -> {
+        CloudIoExecutor.getInstance().execute(CloudIoExecutor.Priority.BACKGROUND, () -> {
             try {
-                Map result = cloudinary.api().resource(publicId, ObjectUtils.asMap("context", true));
+                Map result = CloudinaryGateway.getInstance(appContext).getResource(publicId);
                 Map<String, String> context = (Map<String, String>) ((Map) result.get("context")).get("custom");
                 for (Map.Entry<String, String> entry : context.entrySet()) {
                     Log.d("Metadata", entry.getKey() + ": " + entry.getValue());
@@ -206,7 +759,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             } catch (Exception e) {
                 Log.e("CloudinaryMetadata", "Failed to fetch metadata", e);
             }
-        }).start();
+        });
     }
 
     private String extractPublicIdFromUrl(String url) {
@@ -237,72 +790,378 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         String query = "SELECT * FROM " + TABLE_IMAGES + " ORDER BY " + COLUMN_TIMESTAMP + " DESC";
 
         try (Cursor cursor = db.rawQuery(query, null)) {
+            RowMapper mapper = new RowMapper(cursor);
             while (cursor.moveToNext()) {
-                entries.add(cursorToImageEntry(cursor));
+                entries.add(mapper.map(cursor));
             }
         } catch (Exception e) {
             Log.e(TAG, "Error fetching images: " + e.getMessage());
-        } finally {
-            db.close();
         }
 
         return entries;
     }
 
+    /**
+     * Returns up to {@code limit} entries that sort after the (timestamp, id) key, newest first.
+     * Pass {@code Long.MAX_VALUE} for both values to start from the newest entry.
+     */
+    public List<ImageEntry> getImagesPage(long beforeTimestamp, long beforeId, int limit) {
+        return queryPage("*", beforeTimestamp, beforeId, limit);
+    }
+
+    /**
+     * Same ordering as {@link #getImagesPage}, but only reads the columns list screens show,
+     * leaving the long free-text columns unset.
+     */
+    public List<ImageEntry> getImageSummariesPage(long beforeTimestamp, long beforeId, int limit) {
+        return queryPage(SUMMARY_PROJECTION, beforeTimestamp, beforeId, limit);
+    }
+
+    private List<ImageEntry> queryPage(String projection, long beforeTimestamp, long beforeId, int limit) {
+        List<ImageEntry> entries = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        String query = pageQuery(projection, limit);
+        String[] args = {String.valueOf(beforeTimestamp), String.valueOf(beforeTimestamp), String.valueOf(beforeId)};
+
+        try (Cursor cursor = db.rawQuery(query, args)) {
+            RowMapper mapper = new RowMapper(cursor);
+            while (cursor.moveToNext()) {
+                entries.add(mapper.map(cursor));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error fetching image page: " + e.getMessage());
+        }
+
+        return entries;
+    }
+
+    static String pageQuery(String projection, int limit) {
+        return "SELECT " + projection + " FROM " + TABLE_IMAGES
+                // Written as a range on timestamp so the planner can walk the timestamp index
+                + " WHERE " + COLUMN_TIMESTAMP + " <= ? AND (" + COLUMN_TIMESTAMP + " < ? OR " + COLUMN_ID + " < ?)"
+                + " ORDER BY " + COLUMN_TIMESTAMP + " DESC, " + COLUMN_ID + " DESC LIMIT " + limit;
+    }
+
+    /** Summary rows for the given ids, in no particular order. */
+    public List<ImageEntry> getImageSummariesByIds(long[] ids) {
+        List<ImageEntry> entries = new ArrayList<>();
+        if (ids.length == 0) return entries;
+
+        StringBuilder idList = new StringBuilder();
+        for (long id : ids) {
+            if (idList.length() > 0) idList.append(',');
+            idList.append(id);
+        }
+        SQLiteDatabase db = getReadableDatabase();
+        String query = "SELECT " + SUMMARY_PROJECTION + " FROM " + TABLE_IMAGES
+                + " WHERE " + COLUMN_ID + " IN (" + idList + ")";
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            RowMapper mapper = new RowMapper(cursor);
+            while (cursor.moveToNext()) {
+                entries.add(mapper.map(cursor));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error fetching image summaries: " + e.getMessage());
+        }
+        return entries;
+    }
+
+    /** Entries recorded with the given disease, newest first. */
+    public List<ImageEntry> getImagesByDisease(String plantDisease) {
+        return querySummaries(QUERY_BY_DISEASE, new String[]{plantDisease});
+    }
+
+    /** Up to {@code limit} uploaded entries of the given farmer, newest first. */
+    public List<ImageEntry> getUploadedImagesByFarmer(String farmerName, int limit) {
+        return querySummaries(QUERY_UPLOADED_BY_FARMER, new String[]{farmerName, String.valueOf(limit)});
+    }
+
+    /** Up to {@code limit} uploaded entries at the given location, newest first. */
+    public List<ImageEntry> getUploadedImagesByLocation(String location, int limit) {
+        return querySummaries(QUERY_UPLOADED_BY_LOCATION, new String[]{location, String.valueOf(limit)});
+    }
+
+    private List<ImageEntry> querySummaries(String query, String[] args) {
+        List<ImageEntry> entries = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(query, args)) {
+            RowMapper mapper = new RowMapper(cursor);
+            while (cursor.moveToNext()) {
+                entries.add(mapper.map(cursor));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error fetching images: " + e.getMessage());
+        }
+        return entries;
+    }
+
+    /**
+     * Entry counts per disease, location and week or month, newest bucket first. Reads the
+     * trigger-maintained summary table, so the cost grows with the number of groups, not rows.
+     */
+    public List<DiseaseStat> getDiseaseStats(DiseaseStat.Period period) {
+        String query = "SELECT " + STATS_DISEASE + ", " + STATS_LOCATION + ", " + STATS_BUCKET + ", " + STATS_COUNT
+                + " FROM " + TABLE_DISEASE_STATS + " WHERE " + STATS_PERIOD + " = ?"
+                + " ORDER BY " + STATS_BUCKET + " DESC, " + STATS_DISEASE + ", " + STATS_LOCATION;
+        return queryDiseaseStats(query, new String[]{period.code});
+    }
+
+    /** Entry counts per disease and location across all time, largest first. */
+    public List<DiseaseStat> getDiseaseTotalsByLocation() {
+        // Month buckets partition every row exactly once, so summing them gives the totals
+        String query = "SELECT " + STATS_DISEASE + ", " + STATS_LOCATION + ", NULL, SUM(" + STATS_COUNT + ")"
+                + " FROM " + TABLE_DISEASE_STATS + " WHERE " + STATS_PERIOD + " = ?"
+                + " GROUP BY " + STATS_DISEASE + ", " + STATS_LOCATION + " ORDER BY 4 DESC";
+        return queryDiseaseStats(query, new String[]{DiseaseStat.Period.MONTH.code});
+    }
+
+    private List<DiseaseStat> queryDiseaseStats(String query, String[] args) {
+        List<DiseaseStat> stats = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(query, args)) {
+            while (cursor.moveToNext()) {
+                String disease = cursor.getString(0);
+                String location = cursor.getString(1);
+                stats.add(new DiseaseStat(
+                        disease.isEmpty() ? null : disease,
+                        location.isEmpty() ? null : location,
+                        cursor.isNull(2) ? null : cursor.getString(2),
+                        cursor.getInt(3)));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error fetching disease stats: " + e.getMessage());
+        }
+        return stats;
+    }
+
+    /** Number of entries per farmer name; entries without a farmer are counted under null. */
+    public Map<String, Integer> getCountsByFarmer() {
+        return queryCounts(QUERY_COUNT_BY_FARMER);
+    }
+
+    /** Number of entries per location name; entries without a location are counted under null. */
+    public Map<String, Integer> getCountsByLocation() {
+        return queryCounts(QUERY_COUNT_BY_LOCATION);
+    }
+
+    private Map<String, Integer> queryCounts(String query) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            while (cursor.moveToNext()) {
+                counts.put(cursor.isNull(0) ? null : cursor.getString(0), cursor.getInt(1));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error counting images: " + e.getMessage());
+        }
+        return counts;
+    }
+
+    /**
+     * Full-text search over the descriptive columns. Every word in {@code query} is matched as a
+     * prefix, and results are ranked by where the words hit (title and disease weigh most).
+     */
+    public List<ImageEntry> searchImages(String query, int limit) {
+        List<ImageEntry> entries = new ArrayList<>();
+        String match = buildFtsQuery(query);
+        if (match == null) return entries;
+
+        SQLiteDatabase db = getReadableDatabase();
+        Map<Long, Double> scores = new HashMap<>();
+        String rankQuery = "SELECT docid, matchinfo(" + TABLE_IMAGES_FTS + ", 'pcx') FROM " + TABLE_IMAGES_FTS
+                + " WHERE " + TABLE_IMAGES_FTS + " MATCH ?";
+        try (Cursor cursor = db.rawQuery(rankQuery, new String[]{match})) {
+            while (cursor.moveToNext()) {
+                scores.put(cursor.getLong(0), rankMatch(cursor.getBlob(1)));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error searching images: " + e.getMessage());
+            return entries;
+        }
+        if (scores.isEmpty()) return entries;
+
+        List<Long> ranked = new ArrayList<>(scores.keySet());
+        ranked.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        if (ranked.size() > limit) {
+            ranked = ranked.subList(0, limit);
+        }
+
+        Map<Long, ImageEntry> byId = new HashMap<>();
+        StringBuilder ids = new StringBuilder();
+        for (Long id : ranked) {
+            if (ids.length() > 0) ids.append(',');
+            ids.append(id);
+        }
+        String resultQuery = "SELECT " + SUMMARY_PROJECTION + " FROM " + TABLE_IMAGES
+                + " WHERE " + COLUMN_ID + " IN (" + ids + ")";
+        try (Cursor cursor = db.rawQuery(resultQuery, null)) {
+            RowMapper mapper = new RowMapper(cursor);
+            while (cursor.moveToNext()) {
+                ImageEntry entry = mapper.map(cursor);
+                byId.put(entry.getId(), entry);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error fetching search results: " + e.getMessage());
+        }
+
+        for (Long id : ranked) {
+            ImageEntry entry = byId.get(id);
+            if (entry != null) entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Turns free text into an FTS prefix query ("leaf blig" becomes "leaf* blig*"),
+     * or returns null when there is nothing to search for.
+     */
+    static String buildFtsQuery(String query) {
+        if (query == null) return null;
+        StringBuilder match = new StringBuilder();
+        for (String token : query.split("[^\\p{L}\\p{M}\\p{N}]+")) {
+            if (token.isEmpty()) continue;
+            if (match.length() > 0) match.append(' ');
+            match.append(token).append('*');
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    // Scores a matchinfo('pcx') blob: each phrase/column hit counts in proportion to how rare the
+    // phrase is in that column across all rows, scaled by the column weight.
+    private static double rankMatch(byte[] matchInfo) {
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int c = 0; c < columns; c++) {
+                int base = 2 + 3 * (p * columns + c);
+                int hitsInRow = info.get(base);
+                int hitsInAllRows = info.get(base + 1);
+                if (hitsInRow > 0 && hitsInAllRows > 0) {
+                    double weight = c < FTS_COLUMN_WEIGHTS.length ? FTS_COLUMN_WEIGHTS[c] : 1.0;
+                    score += weight * hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+        return score;
+    }
+
+    /** An uploaded entry whose bytes hash to {@code contentHash}, or null if there is none. */
+    public ImageEntry findUploadedByContentHash(String contentHash) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(QUERY_BY_CONTENT_HASH, new String[]{contentHash})) {
+            return cursor.moveToFirst() ? new RowMapper(cursor).map(cursor) : null;
+        }
+    }
+
     public ImageEntry getImageById(long id) {
+        ImageEntry entry = entryCache.get(id);
+        if (entry != null) return entry;
+
         SQLiteDatabase db = getReadableDatabase();
-        ImageEntry entry = null;
         try (Cursor cursor = db.query(TABLE_IMAGES, null, COLUMN_ID + "=?", new String[]{String.valueOf(id)}, null, null, null)) {
             if (cursor.moveToFirst()) {
-                entry = cursorToImageEntry(cursor);
+                entry = new RowMapper(cursor).map(cursor);
+                entryCache.put(entry);
             }
         } catch (Exception e) {
             Log.e(TAG, "Error fetching image by ID: " + e.getMessage());
-        } finally {
-            db.close();
         }
         return entry;
     }
 
-    public boolean deleteImage(long id) {
-        // Fetch the image entry first to get public_id
-        ImageEntry entry = getImageById(id);
-        if (entry == null) return false;
+    /** Cache in front of {@link #getImageById}; exposes hit/miss counts for sizing. */
+    public ImageEntryCache getEntryCache() {
+        return entryCache;
+    }
 
-        // Delete from SQLite
+    public boolean deleteImage(long id) {
+        // The row, its public_id and its pending upload are read and removed together, so an
+        // upload finishing meanwhile either lands first and is destroyed below, or finds no row
+        // and destroys its own resource
         SQLiteDatabase db = getWritableDatabase();
-        int rows = db.delete(TABLE_IMAGES, COLUMN_ID + "=?", new String[]{String.valueOf(id)});
-        db.close();
+        ImageEntry entry;
+        String pendingUpload;
+        int rows;
+        db.beginTransaction();
+        try {
+            entryCache.remove(id);
+            entry = getImageById(id);
+            if (entry == null) return false;
+            rows = db.delete(TABLE_IMAGES, COLUMN_ID + "=?", new String[]{String.valueOf(id)});
+            pendingUpload = cloudOutbox().removeUpload(id);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        entryCache.remove(id);
+        if (rows > 0) {
+            publishChange(ImageChange.Type.DELETED, id);
+            deleteStagedFiles(entry, pendingUpload);
+        }
 
-        // Delete from Cloudinary in background
+        // Delete from Cloudinary through the durable outbox
         if (rows > 0 && entry.getPublicId() != null && !entry.getPublicId().isEmpty()) {
-            new Thread(() -> {
-                try {
-                    cloudinary.uploader().destroy(entry.getPublicId(), ObjectUtils.emptyMap());
-                    Log.d(TAG, "✅ Image deleted from Cloudinary: " + entry.getPublicId());
-                } catch (Exception e) {
-                    Log.e(TAG, "❌ Failed to delete image from Cloudinary: " + e.getMessage());
-                }
-            }).start();
+            cloudOutbox().enqueueDestroy(entry.getPublicId());
         }
 
         return rows > 0;
     }
 
+    // Local copies that only existed for this row: the thumbnail, the file still waiting to be
+    // uploaded, a picked file copied into app storage and the stored offline original
+    private void deleteStagedFiles(ImageEntry entry, String pendingUpload) {
+        if (entry.getThumbPath() != null) new File(entry.getThumbPath()).delete();
+        if (pendingUpload != null) new File(pendingUpload).delete();
+        String imagePath = entry.getImagePath();
+        File pickedDir = new File(appContext.getFilesDir(), "picked");
+        if (imagePath != null && pickedDir.equals(new File(imagePath).getParentFile())) {
+            new File(imagePath).delete();
+        }
+        OfflineImageStore.getInstance(appContext).remove(entry.getPublicId());
+    }
 
-    private ImageEntry cursorToImageEntry(Cursor cursor) {
-        ImageEntry entry = new ImageEntry();
-        entry.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-        entry.setImagePath(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_IMAGE_PATH)));
-        entry.setTitle(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TITLE)));
-        entry.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION)));
-        entry.setTimestamp(cursor.getLong( cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP)));
-        entry.setLocation(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LOCATION_NAME)));
-        entry.setFarmerName(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_FARMER_NAME)));
-        entry.setAdditionalDetails(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ADDITIONAL_DETAILS)));
-        entry.setCloudinaryUrl(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CLOUDINARY_URL)));
-        entry.setPublicId(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PUBLIC_ID)));
-        entry.setPlantDisease(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PLANT_DISEASE)));
-        return entry;
+
+    /**
+     * Maps rows of one cursor to {@link ImageEntry}. Column indices are resolved once when the
+     * mapper is created; columns missing from the projection are left unset.
+     */
+    private static class RowMapper {
+        private final int id, imagePath, title, description, timestamp, location,
+                farmerName, additionalDetails, cloudinaryUrl, publicId, plantDisease, contentHash, thumbPath;
+
+        RowMapper(Cursor cursor) {
+            id = cursor.getColumnIndex(COLUMN_ID);
+            imagePath = cursor.getColumnIndex(COLUMN_IMAGE_PATH);
+            title = cursor.getColumnIndex(COLUMN_TITLE);
+            description = cursor.getColumnIndex(COLUMN_DESCRIPTION);
+            timestamp = cursor.getColumnIndex(COLUMN_TIMESTAMP);
+            location = cursor.getColumnIndex(COLUMN_LOCATION_NAME);
+            farmerName = cursor.getColumnIndex(COLUMN_FARMER_NAME);
+            additionalDetails = cursor.getColumnIndex(COLUMN_ADDITIONAL_DETAILS);
+            cloudinaryUrl = cursor.getColumnIndex(COLUMN_CLOUDINARY_URL);
+            publicId = cursor.getColumnIndex(COLUMN_PUBLIC_ID);
+            plantDisease = cursor.getColumnIndex(COLUMN_PLANT_DISEASE);
+            contentHash = cursor.getColumnIndex(COLUMN_CONTENT_HASH);
+            thumbPath = cursor.getColumnIndex(COLUMN_THUMB_PATH);
+        }
+
+        ImageEntry map(Cursor cursor) {
+            ImageEntry entry = new ImageEntry();
+            if (id >= 0) entry.setId(cursor.getLong(id));
+            if (imagePath >= 0) entry.setImagePath(cursor.getString(imagePath));
+            if (title >= 0) entry.setTitle(cursor.getString(title));
+            if (description >= 0) entry.setDescription(cursor.getString(description));
+            if (timestamp >= 0) entry.setTimestamp(cursor.getLong(timestamp));
+            if (location >= 0) entry.setLocation(cursor.getString(location));
+            if (farmerName >= 0) entry.setFarmerName(cursor.getString(farmerName));
+            if (additionalDetails >= 0) entry.setAdditionalDetails(cursor.getString(additionalDetails));
+            if (cloudinaryUrl >= 0) entry.setCloudinaryUrl(cursor.getString(cloudinaryUrl));
+            if (publicId >= 0) entry.setPublicId(cursor.getString(publicId));
+            if (plantDisease >= 0) entry.setPlantDisease(cursor.getString(plantDisease));
+            if (contentHash >= 0) entry.setContentHash(cursor.getString(contentHash));
+            if (thumbPath >= 0) entry.setThumbPath(cursor.getString(thumbPath));
+            return entry;
+        }
     }
 }
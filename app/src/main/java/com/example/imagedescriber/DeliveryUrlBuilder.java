@@ -0,0 +1,64 @@
+package com.example.imagedescriber;
+
+import java.util.Locale;
+
+/**
+ * Builds Cloudinary delivery URLs sized for the view they are shown in. Widths are rounded up
+ * to a small set of buckets and aspect ratios to one decimal, so cells of slightly different
+ * sizes share one derived image in Cloudinary's CDN and in Glide's disk cache. The format and
+ * quality are left to Cloudinary ({@code f_auto,q_auto}).
+ */
+public class DeliveryUrlBuilder {
+
+    static final int[] WIDTH_BUCKETS = {160, 240, 320, 480, 640, 960, 1280};
+
+    private static final String UPLOAD_SEGMENT = "/image/upload/";
+
+    private final String cloudName;
+
+    public DeliveryUrlBuilder(String cloudName) {
+        this.cloudName = cloudName;
+    }
+
+    /**
+     * URL of {@code entry} cropped to fill a {@code widthPx} x {@code heightPx} view, or null if
+     * the entry has no Cloudinary resource and should be loaded from its image path instead.
+     */
+    public String thumbnail(ImageEntry entry, int widthPx, int heightPx) {
+        String transformation = transformation(widthPx, heightPx);
+
+        String url = entry.getCloudinaryUrl();
+        if (url == null && isRemote(entry.getImagePath())) url = entry.getImagePath();
+        if (url != null) {
+            int at = url.indexOf(UPLOAD_SEGMENT);
+            if (at >= 0) {
+                int insert = at + UPLOAD_SEGMENT.length();
+                return url.substring(0, insert) + transformation + "/" + url.substring(insert);
+            }
+        }
+
+        String publicId = entry.getPublicId();
+        if (publicId == null || publicId.isEmpty() || cloudName == null || cloudName.isEmpty()) return null;
+        return "https://res.cloudinary.com/" + cloudName + UPLOAD_SEGMENT + transformation + "/" + publicId;
+    }
+
+    static String transformation(int widthPx, int heightPx) {
+        StringBuilder t = new StringBuilder("c_fill,w_").append(bucket(widthPx));
+        if (widthPx > 0 && heightPx > 0) {
+            t.append(",ar_").append(String.format(Locale.US, "%.1f", (float) widthPx / heightPx));
+        }
+        return t.append(",f_auto,q_auto").toString();
+    }
+
+    /** Smallest bucket at least {@code widthPx} wide, or the largest bucket for wider views. */
+    static int bucket(int widthPx) {
+        for (int bucket : WIDTH_BUCKETS) {
+            if (bucket >= widthPx) return bucket;
+        }
+        return WIDTH_BUCKETS[WIDTH_BUCKETS.length - 1];
+    }
+
+    static boolean isRemote(String path) {
+        return path != null && (path.startsWith("http://") || path.startsWith("https://"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.imagedescriber;
+
+/**
+ * Number of entries recorded for one disease at one location, optionally within one week or
+ * month bucket.
+ */
+public class DiseaseStat {
+
+    public enum Period {
+        WEEK("W"),
+        MONTH("M");
+
+        final String code;
+
+        Period(String code) {
+            this.code = code;
+        }
+    }
+
+    private final String plantDisease;
+    private final String location;
+    private final String bucket;
+    private final int count;
+
+    public DiseaseStat(String plantDisease, String location, String bucket, int count) {
+        this.plantDisease = plantDisease;
+        this.location = location;
+        this.bucket = bucket;
+        this.count = count;
+    }
+
+    /** Disease name, or null for entries recorded without one. */
+    public String getPlantDisease() {
+        return plantDisease;
+    }
+
+    /** Location name, or null for entries recorded without one. */
+    public String getLocation() {
+        return location;
+    }
+
+    /** UTC week ("2024-W07") or month ("2024-02"), or null for totals across all time. */
+    public String getBucket() {
+        return bucket;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
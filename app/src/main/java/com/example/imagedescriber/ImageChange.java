@@ -0,0 +1,37 @@
+package com.example.imagedescriber;
+
+/**
+ * A committed change to the images table. Versions increase by one per change, so a listener that
+ * remembers the last version it applied can tell whether it missed anything.
+ */
+public class ImageChange {
+
+    public enum Type { INSERTED, UPDATED, DELETED }
+
+    public interface Listener {
+        /** Called on the thread that made the change. */
+        void onImagesChanged(ImageChange change);
+    }
+
+    private final long version;
+    private final Type type;
+    private final long[] ids;
+
+    public ImageChange(long version, Type type, long[] ids) {
+        this.version = version;
+        this.type = type;
+        this.ids = ids;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long[] getIds() {
+        return ids;
+    }
+}
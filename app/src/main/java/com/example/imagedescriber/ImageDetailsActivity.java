@@ -5,13 +5,8 @@ import android.annotation.SuppressLint;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
-import android.media.ExifInterface;
 import android.net.Uri;
 import android.os.Bundle;
-import android.util.Log;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
@@ -25,10 +20,6 @@ import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -63,19 +54,25 @@ public class ImageDetailsActivity extends AppCompatActivity {
         locationText = findViewById(R.id.location_text);
         updateBtn = findViewById(R.id.update_button);
 
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
         executorService = Executors.newSingleThreadExecutor();
 
         // Export PDF Button logic
         Button btnExportPDF = findViewById(R.id.btn_export_pdf);
         btnExportPDF.setOnClickListener(v -> {
             if (currentImage != null) {
-                File pdfFile = PDFUtils.generatePDF(this, currentImage);
-                if (pdfFile != null) {
-                    sharePDF(pdfFile);
-                } else {
-                    Toast.makeText(this, "Failed to generate PDF", Toast.LENGTH_SHORT).show();
-                }
+                // The report image is loaded synchronously, which is not allowed on the main thread
+                ImageEntry entry = currentImage;
+                executorService.execute(() -> {
+                    File pdfFile = PDFUtils.generatePDF(this, entry);
+                    runOnUiThread(() -> {
+                        if (pdfFile != null) {
+                            sharePDF(pdfFile);
+                        } else {
+                            Toast.makeText(this, "Failed to generate PDF", Toast.LENGTH_SHORT).show();
+                        }
+                    });
+                });
             }
         });
 
@@ -125,18 +122,8 @@ public class ImageDetailsActivity extends AppCompatActivity {
             return;
         }
 
-        String path = currentImage.getImagePath();
-        executorService.execute(() -> {
-            Bitmap bitmap = loadBitmapFromPath(path);
-            runOnUiThread(() -> {
-                if (bitmap != null) {
-                    previewImageView.setImageBitmap(bitmap);
-                } else {
-                    showToast("Unable to load image.");
-                    previewImageView.setImageResource(R.drawable.ic_launcher_foreground);
-                }
-            });
-        });
+        ImageLoader.getInstance(this).load(OfflineImageStore.getInstance(this).resolve(currentImage), previewImageView,
+                R.drawable.image_placeholder_background, R.drawable.ic_launcher_foreground);
 
         editTitle.setText(currentImage.getTitle());
         editDescription.setText(currentImage.getDescription());
@@ -149,57 +136,6 @@ public class ImageDetailsActivity extends AppCompatActivity {
         }
     }
 
-    private Bitmap loadBitmapFromPath(String imagePath) {
-        try {
-            if (imagePath.startsWith("http")) {
-                URL url = new URL(imagePath);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setDoInput(true);
-                connection.connect();
-                InputStream input = connection.getInputStream();
-                return BitmapFactory.decodeStream(input);
-            } else {
-                File imageFile = new File(imagePath);
-                if (imageFile.exists()) {
-                    Bitmap bitmap = BitmapFactory.decodeFile(imageFile.getAbsolutePath());
-                    return rotateImageIfRequired(bitmap, imageFile.getAbsolutePath());
-                } else {
-                    Uri uri = Uri.parse(imagePath);
-                    InputStream inputStream = getContentResolver().openInputStream(uri);
-                    return BitmapFactory.decodeStream(inputStream);
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading image", e);
-            return null;
-        }
-    }
-
-    private Bitmap rotateImageIfRequired(Bitmap img, String imagePath) {
-        try {
-            ExifInterface exif = new ExifInterface(imagePath);
-            int orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
-            Matrix matrix = new Matrix();
-            switch (orientation) {
-                case ExifInterface.ORIENTATION_ROTATE_90:
-                    matrix.postRotate(90);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_180:
-                    matrix.postRotate(180);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_270:
-                    matrix.postRotate(270);
-                    break;
-                default:
-                    return img;
-            }
-            return Bitmap.createBitmap(img, 0, 0, img.getWidth(), img.getHeight(), matrix, true);
-        } catch (IOException e) {
-            Log.e(TAG, "Rotation error", e);
-            return img;
-        }
-    }
-
     private void showToast(String msg) {
         Toast.makeText(this, msg, Toast.LENGTH_SHORT).show();
     }
@@ -18,6 +18,8 @@ public class ImageEntry {
     private String farmerName;       // Optional
     private String plantDisease;     // Optional
     private String additionalDetails;// Optional notes or tags
+    private String contentHash;      // SHA-256 of the uploaded bytes, hex
+    private String thumbPath;        // Small JPEG for list screens, null until generated
 
     // Default constructor
     public ImageEntry() {}
@@ -47,6 +49,14 @@ public class ImageEntry {
                 location, farmerName, plantDisease, additionalDetails);
     }
 
+    // Copy constructor
+    public ImageEntry(ImageEntry other) {
+        this(other.id, other.imagePath, other.cloudinaryUrl, other.publicId, other.title, other.description,
+                other.timestamp, other.location, other.farmerName, other.plantDisease, other.additionalDetails);
+        this.contentHash = other.contentHash;
+        this.thumbPath = other.thumbPath;
+    }
+
     // Getters and setters
     public long getId() {
         return id;
@@ -124,4 +134,18 @@ public class ImageEntry {
     public void setAdditionalDetails(String additionalDetails) {
         this.additionalDetails = additionalDetails;
     }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getThumbPath() {
+        return thumbPath;
+    }
+    public void setThumbPath(String thumbPath) {
+        this.thumbPath = thumbPath;
+    }
 }
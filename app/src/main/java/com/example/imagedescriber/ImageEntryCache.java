@@ -0,0 +1,73 @@
+package com.example.imagedescriber;
+
+import android.util.LruCache;
+
+/**
+ * Id-keyed LRU of full {@link ImageEntry} rows, bounded by an estimate of their heap size.
+ * Entries are copied on the way in and out so callers can never mutate a cached snapshot.
+ */
+public class ImageEntryCache {
+
+    public static final int DEFAULT_MAX_BYTES = 512 * 1024;
+
+    // Rough fixed cost of an ImageEntry plus its String headers
+    private static final int ENTRY_OVERHEAD_BYTES = 200;
+
+    private final LruCache<Long, ImageEntry> cache;
+
+    public ImageEntryCache(int maxBytes) {
+        cache = new LruCache<Long, ImageEntry>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, ImageEntry entry) {
+                return estimateSize(entry);
+            }
+        };
+    }
+
+    public ImageEntry get(long id) {
+        ImageEntry entry = cache.get(id);
+        return entry != null ? new ImageEntry(entry) : null;
+    }
+
+    public void put(ImageEntry entry) {
+        cache.put(entry.getId(), new ImageEntry(entry));
+    }
+
+    public void remove(long id) {
+        cache.remove(id);
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    public int sizeBytes() {
+        return cache.size();
+    }
+
+    public int maxSizeBytes() {
+        return cache.maxSize();
+    }
+
+    @Override
+    public String toString() {
+        return "ImageEntryCache[hits=" + hitCount() + ", misses=" + missCount()
+                + ", bytes=" + sizeBytes() + "/" + maxSizeBytes() + "]";
+    }
+
+    private static int estimateSize(ImageEntry entry) {
+        return ENTRY_OVERHEAD_BYTES
+                + chars(entry.getImagePath()) + chars(entry.getCloudinaryUrl()) + chars(entry.getPublicId())
+                + chars(entry.getTitle()) + chars(entry.getDescription()) + chars(entry.getLocation())
+                + chars(entry.getFarmerName()) + chars(entry.getPlantDisease()) + chars(entry.getAdditionalDetails())
+                + chars(entry.getContentHash()) + chars(entry.getThumbPath());
+    }
+
+    private static int chars(String value) {
+        return value != null ? value.length() * 2 : 0;
+    }
+}
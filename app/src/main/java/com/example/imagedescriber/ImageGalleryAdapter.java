@@ -8,45 +8,162 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 public class ImageGalleryAdapter extends RecyclerView.Adapter<ImageGalleryAdapter.ViewHolder> {
 
+    // Start fetching the next page when this close to the end of the loaded rows
+    private static final int PREFETCH_DISTANCE = 10;
+
     private Context context;
     private List<ImageEntry> imageList;
+    private PagedImageList pagedList;
+    // Further pages are read here and appended on the main thread
+    private final Executor pageExecutor;
+    private boolean loadingMore = false;
+
+    private final DeliveryUrlBuilder urlBuilder;
+    // Size of one grid cell in pixels, used to request thumbnails instead of originals
+    private int cellWidth, cellHeight;
 
-    public ImageGalleryAdapter(Context context, List<ImageEntry> imageList) {
+    public ImageGalleryAdapter(Context context, List<ImageEntry> imageList, Executor pageExecutor) {
         this.context = context;
         this.imageList = imageList;
+        this.pageExecutor = pageExecutor;
+        this.urlBuilder = new DeliveryUrlBuilder(context.getString(R.string.cloudinary_cloud_name));
+    }
+
+    public ImageGalleryAdapter(Context context, PagedImageList pagedList, Executor pageExecutor) {
+        this.context = context;
+        this.pagedList = pagedList;
+        this.pageExecutor = pageExecutor;
+        this.urlBuilder = new DeliveryUrlBuilder(context.getString(R.string.cloudinary_cloud_name));
     }
 
     @Override
     public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.item_image, parent, false);
+        measureCell(parent);
         return new ViewHolder(view);
     }
 
+    private void measureCell(ViewGroup parent) {
+        RecyclerView.LayoutManager layoutManager = ((RecyclerView) parent).getLayoutManager();
+        int columns = layoutManager instanceof GridLayoutManager ? ((GridLayoutManager) layoutManager).getSpanCount() : 1;
+        int width = parent.getWidth() > 0 ? parent.getWidth() : context.getResources().getDisplayMetrics().widthPixels;
+        cellWidth = width / columns;
+        cellHeight = context.getResources().getDimensionPixelSize(R.dimen.gallery_cell_height);
+    }
+
     public void setFilteredList(List<ImageEntry> filteredList) {
         this.imageList = filteredList;
+        this.pagedList = null;
         notifyDataSetChanged();
     }
 
+    public void setPagedList(PagedImageList pagedList) {
+        this.pagedList = pagedList;
+        this.imageList = null;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Applies a table change to the paged list with item-level notifications.
+     *
+     * @param rows current summary rows for the changed ids; unused for deletes
+     * @return false if the change cannot be applied in place and the caller should reload
+     */
+    public boolean applyChange(ImageChange change, List<ImageEntry> rows) {
+        if (pagedList == null) return false;
+
+        switch (change.getType()) {
+            case INSERTED:
+                for (ImageEntry row : rows) {
+                    // A reload racing with the insert may already contain the row
+                    if (pagedList.indexOfResident(row.getId()) >= 0) continue;
+                    int position = pagedList.insert(row);
+                    if (position >= 0) notifyItemInserted(position);
+                }
+                return true;
+
+            case UPDATED:
+                for (ImageEntry row : rows) {
+                    // Rows on evicted pages are read fresh when their page is reloaded
+                    int position = pagedList.indexOfResident(row.getId());
+                    if (position < 0) continue;
+                    if (pagedList.get(position).getTimestamp() != row.getTimestamp()) return false;
+                    pagedList.replace(position, row);
+                    notifyItemChanged(position);
+                }
+                return true;
+
+            case DELETED:
+                for (long id : change.getIds()) {
+                    int position = pagedList.indexOfResident(id);
+                    if (position < 0) return false;
+                    pagedList.remove(position);
+                    notifyItemRemoved(position);
+                }
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private ImageEntry getEntry(int position) {
+        return pagedList != null ? pagedList.get(position) : imageList.get(position);
+    }
+
+    private void maybeLoadMore(ViewHolder holder, int position) {
+        if (pagedList == null || loadingMore || !pagedList.hasMore()) return;
+        if (position < pagedList.size() - PREFETCH_DISTANCE) return;
+
+        loadingMore = true;
+        PagedImageList list = pagedList;
+        long[] key = list.nextPageKey();
+        pageExecutor.execute(() -> {
+            List<ImageEntry> page = list.readPage(key);
+            // Posted, so the append never lands while RecyclerView is binding
+            holder.itemView.post(() -> {
+                loadingMore = false;
+                if (list != pagedList) return;
+                int start = list.size();
+                int added = list.appendPage(key, page);
+                if (added > 0) {
+                    notifyItemRangeInserted(start, added);
+                }
+            });
+        });
+    }
+
     @Override
     public void onBindViewHolder(ViewHolder holder, int position) {
-        ImageEntry entry = imageList.get(position);
+        maybeLoadMore(holder, position);
+        ImageEntry entry = getEntry(position);
+        if (entry == null) {
+            bindPlaceholder(holder);
+            return;
+        }
         holder.title.setText(entry.getTitle());
         holder.description.setText(entry.getDescription());  // New: set description
 
-        String imagePath = entry.getImagePath();
+        // Only thumbnails are loaded here: the generated file, or until it exists a Cloudinary
+        // resize. Local-only rows show the placeholder until their thumbnail is written.
+        String thumbnail = entry.getThumbPath() != null ? entry.getThumbPath()
+                : urlBuilder.thumbnail(entry, cellWidth, cellHeight);
 
         Glide.with(context)
-                .load(imagePath)
+                .load(thumbnail)
                 .placeholder(R.drawable.image_placeholder_background)
+                .fallback(R.drawable.image_placeholder_background)
                 .error(R.drawable.error_image)
                 .transition(DrawableTransitionOptions.withCrossFade())
                 .into(holder.imageView);
@@ -58,9 +175,18 @@ public class ImageGalleryAdapter extends RecyclerView.Adapter<ImageGalleryAdapte
         });
     }
 
+    // A recycled holder must not keep showing, or opening, the row it was bound to before
+    private void bindPlaceholder(ViewHolder holder) {
+        holder.title.setText(null);
+        holder.description.setText(null);
+        Glide.with(context).clear(holder.imageView);
+        holder.imageView.setImageResource(R.drawable.image_placeholder_background);
+        holder.itemView.setOnClickListener(null);
+    }
+
     @Override
     public int getItemCount() {
-        return imageList.size();
+        return pagedList != null ? pagedList.size() : imageList.size();
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
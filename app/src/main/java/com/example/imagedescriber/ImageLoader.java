@@ -0,0 +1,158 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+import android.widget.ImageView;
+
+import androidx.annotation.DrawableRes;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single entry point for showing entry images outside the gallery. Sources may be URLs, file
+ * paths or {@code content://} URIs. Glide does the work behind it: decodes are downsampled to
+ * the target size and EXIF-rotated, results go through the memory and disk caches configured in
+ * {@link AgriGlideModule}, concurrent requests for the same image share one load, and requests
+ * tied to a view are cancelled when its activity is destroyed. This class adds hit-rate counters.
+ */
+public class ImageLoader {
+
+    private static final String TAG = "ImageLoader";
+
+    /** Receives a bitmap that is only valid until {@link #use} returns. */
+    public interface BitmapUser {
+        void use(Bitmap bitmap) throws Exception;
+    }
+
+    private static ImageLoader instance;
+
+    private final Context appContext;
+    private final Map<DataSource, AtomicLong> loadsBySource = new EnumMap<>(DataSource.class);
+    private final AtomicLong failures = new AtomicLong();
+
+    public static synchronized ImageLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ImageLoader(Context appContext) {
+        this.appContext = appContext;
+        for (DataSource source : DataSource.values()) {
+            loadsBySource.put(source, new AtomicLong());
+        }
+    }
+
+    /** Loads {@code source} into {@code target}, sized to the view and bound to its activity. */
+    public void load(String source, ImageView target, @DrawableRes int placeholder, @DrawableRes int error) {
+        load(source, target, placeholder, error, null);
+    }
+
+    /** As {@link #load}, running {@code onReady} on the main thread once the image is shown. */
+    public void load(String source, ImageView target, @DrawableRes int placeholder, @DrawableRes int error,
+                     @Nullable Runnable onReady) {
+        Glide.with(target)
+                .load(source)
+                .placeholder(placeholder)
+                .error(error)
+                .listener(new MetricsListener<Drawable>(onReady))
+                .into(target);
+    }
+
+    /**
+     * Decodes {@code source} to at most {@code width} x {@code height}, keeping its aspect ratio.
+     * Blocks; call from a worker thread.
+     */
+    public Bitmap loadBitmap(String source, int width, int height) throws Exception {
+        return bitmapRequest(source).submit(width, height).get();
+    }
+
+    /**
+     * Like {@link #loadBitmap}, but hands the bitmap back to Glide's caches and bitmap pool once
+     * {@code user} is done with it. Blocks; call from a worker thread.
+     */
+    public void withBitmap(String source, int width, int height, BitmapUser user) throws Exception {
+        FutureTarget<Bitmap> target = bitmapRequest(source).submit(width, height);
+        try {
+            user.use(target.get());
+        } finally {
+            Glide.with(appContext).clear(target);
+        }
+    }
+
+    private RequestBuilder<Bitmap> bitmapRequest(String source) {
+        return Glide.with(appContext)
+                .asBitmap()
+                .load(source)
+                .fitCenter()
+                .listener(new MetricsListener<Bitmap>());
+    }
+
+    public long getLoadCount(DataSource source) {
+        return loadsBySource.get(source).get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /** Share of completed loads served from the memory or disk cache rather than the source. */
+    public double getHitRate() {
+        long hits = getLoadCount(DataSource.MEMORY_CACHE) + getLoadCount(DataSource.RESOURCE_DISK_CACHE)
+                + getLoadCount(DataSource.DATA_DISK_CACHE);
+        long total = hits + getLoadCount(DataSource.REMOTE) + getLoadCount(DataSource.LOCAL) + failures.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageLoader{memory=" + getLoadCount(DataSource.MEMORY_CACHE)
+                + ", disk=" + (getLoadCount(DataSource.RESOURCE_DISK_CACHE) + getLoadCount(DataSource.DATA_DISK_CACHE))
+                + ", remote=" + getLoadCount(DataSource.REMOTE)
+                + ", local=" + getLoadCount(DataSource.LOCAL)
+                + ", failed=" + failures.get()
+                + ", hitRate=" + String.format("%.2f", getHitRate()) + "}";
+    }
+
+    private class MetricsListener<T> implements RequestListener<T> {
+        @Nullable
+        private final Runnable onReady;
+
+        MetricsListener() {
+            this(null);
+        }
+
+        MetricsListener(@Nullable Runnable onReady) {
+            this.onReady = onReady;
+        }
+
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<T> target, boolean isFirstResource) {
+            failures.incrementAndGet();
+            Log.w(TAG, "Failed to load " + model + ": " + (e != null ? e.getMessage() : "unknown"));
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(T resource, Object model, Target<T> target, DataSource dataSource, boolean isFirstResource) {
+            loadsBySource.get(dataSource).incrementAndGet();
+            Log.d(TAG, model + " from " + dataSource + "; " + ImageLoader.this);
+            if (onReady != null) onReady.run();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.imagedescriber;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Turns a camera capture into the file we upload: decoded upright at a target long edge by
+ * {@link ImageUtils#decode(File, int, BitmapPool)}, and encoded in a configurable format and
+ * quality. If a byte budget is set, quality is stepped down until the output fits or the quality
+ * floor is reached. With a pool, the bitmaps used while decoding are taken from it and returned
+ * afterwards, so repeated captures allocate nothing new.
+ */
+public class ImageTranscoder {
+
+    private static final String TAG = "ImageTranscoder";
+
+    public static final int DEFAULT_LONG_EDGE = 1024;
+    public static final int DEFAULT_QUALITY = 90;
+    private static final int MIN_QUALITY = 50;
+    private static final int QUALITY_STEP = 10;
+
+    /** Measurements for one transcoded image. */
+    public static class Report {
+        public final int sourceWidth, sourceHeight;
+        public final int outputWidth, outputHeight;
+        public final int sampleSize;
+        public final int quality;
+        public final long outputBytes;
+        // Peak Java plus native heap above what was in use when the transcode started
+        public final long peakHeapBytes;
+        public final long cpuTimeMs;
+
+        Report(int sourceWidth, int sourceHeight, int outputWidth, int outputHeight, int sampleSize,
+               int quality, long outputBytes, long peakHeapBytes, long cpuTimeMs) {
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.outputWidth = outputWidth;
+            this.outputHeight = outputHeight;
+            this.sampleSize = sampleSize;
+            this.quality = quality;
+            this.outputBytes = outputBytes;
+            this.peakHeapBytes = peakHeapBytes;
+            this.cpuTimeMs = cpuTimeMs;
+        }
+
+        @Override
+        public String toString() {
+            return sourceWidth + "x" + sourceHeight + " -> " + outputWidth + "x" + outputHeight
+                    + " (sample " + sampleSize + ", q" + quality + "): " + outputBytes + " bytes, peak heap "
+                    + (peakHeapBytes / 1024) + " KB, cpu " + cpuTimeMs + " ms";
+        }
+    }
+
+    private final int targetLongEdge;
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+    private final long maxOutputBytes;
+    private final BitmapPool pool;
+
+    public ImageTranscoder() {
+        this(null);
+    }
+
+    public ImageTranscoder(BitmapPool pool) {
+        this(DEFAULT_LONG_EDGE, Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY, 0, pool);
+    }
+
+    /**
+     * @param maxOutputBytes byte budget for the encoded file, or 0 to encode once at {@code quality}
+     * @param pool source of reusable bitmaps, or null to allocate
+     */
+    public ImageTranscoder(int targetLongEdge, Bitmap.CompressFormat format, int quality, long maxOutputBytes,
+                           BitmapPool pool) {
+        this.targetLongEdge = targetLongEdge;
+        this.format = format;
+        this.quality = quality;
+        this.maxOutputBytes = maxOutputBytes;
+        this.pool = pool;
+    }
+
+    public Report transcode(File source, File target) throws IOException {
+        long cpuStart = SystemClock.currentThreadTimeMillis();
+        HeapSampler heap = new HeapSampler();
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(source.getAbsolutePath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not a decodable image: " + source);
+        }
+        int sourceWidth = options.outWidth;
+        int sourceHeight = options.outHeight;
+
+        // Sampled, scaled and turned upright while decoding; see ImageUtils
+        Bitmap output = ImageUtils.decode(source, targetLongEdge, pool);
+        heap.sample();
+        int outputWidth = output.getWidth();
+        int outputHeight = output.getHeight();
+
+        int usedQuality = quality;
+        try {
+            encode(output, target, usedQuality);
+            while (maxOutputBytes > 0 && target.length() > maxOutputBytes && usedQuality - QUALITY_STEP >= MIN_QUALITY) {
+                usedQuality -= QUALITY_STEP;
+                encode(output, target, usedQuality);
+            }
+            heap.sample();
+        } finally {
+            ImageUtils.release(pool, output);
+        }
+
+        Report report = new Report(sourceWidth, sourceHeight, outputWidth, outputHeight,
+                sampleSizeFor(sourceWidth, sourceHeight, targetLongEdge), usedQuality, target.length(), heap.peak(),
+                SystemClock.currentThreadTimeMillis() - cpuStart);
+        Log.d(TAG, report.toString());
+        return report;
+    }
+
+    private void encode(Bitmap bitmap, File target, int quality) throws IOException {
+        try (OutputStream out = new FileOutputStream(target)) {
+            if (!bitmap.compress(format, quality, out)) {
+                throw new IOException("Encoding " + format + " failed");
+            }
+        }
+    }
+
+    /**
+     * Largest power of two that keeps the decoded long edge at or above {@code targetLongEdge},
+     * so the final scale step only ever shrinks.
+     */
+    static int sampleSizeFor(int width, int height, int targetLongEdge) {
+        int longEdge = Math.max(width, height);
+        int sampleSize = 1;
+        while (longEdge / (sampleSize * 2) >= targetLongEdge) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // Bitmap pixels live on the Java heap before API 26 and in native memory after, so both count
+    private static class HeapSampler {
+        private final long baseline = used();
+        private long peak = baseline;
+
+        void sample() {
+            peak = Math.max(peak, used());
+        }
+
+        long peak() {
+            return Math.max(0, peak - baseline);
+        }
+
+        private static long used() {
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+        }
+    }
+}
@@ -1,12 +1,227 @@
 package com.example.imagedescriber;
 
+import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Log;
 
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Orientation-aware decoding for files and {@code content://} streams. The EXIF orientation is
+ * read from the same source, the image is sampled down while decoding, and rotation, mirroring
+ * and the final scale are applied while drawing into the output bitmap. Rotated images are
+ * decoded in horizontal bands, so besides the output only one band is ever in memory.
+ */
 public class ImageUtils {
-    public static Bitmap rotateBitmap(Bitmap bitmap, int degrees) {
+
+    private static final String TAG = "ImageUtils";
+
+    // Source rows per band before sampling
+    static final int BAND_ROWS = 512;
+
+    /** Opens a fresh stream over the same image each time. */
+    interface Source {
+        InputStream open() throws IOException;
+    }
+
+    public static Bitmap decode(File file, int maxLongEdge, BitmapPool pool) throws IOException {
+        return decode(() -> new FileInputStream(file), maxLongEdge, pool);
+    }
+
+    public static Bitmap decode(Context context, Uri uri, int maxLongEdge, BitmapPool pool) throws IOException {
+        return decode(() -> {
+            InputStream in = context.getContentResolver().openInputStream(uri);
+            if (in == null) throw new FileNotFoundException("Cannot open " + uri);
+            return in;
+        }, maxLongEdge, pool);
+    }
+
+    /**
+     * Decodes {@code source} upright with its long edge at most {@code maxLongEdge}.
+     *
+     * @param pool source of reusable bitmaps, or null to allocate
+     */
+    static Bitmap decode(Source source, int maxLongEdge, BitmapPool pool) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = source.open()) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not a decodable image");
+        }
+        int width = options.outWidth;
+        int height = options.outHeight;
+        int orientation = readOrientation(source);
+
+        int sampleSize = ImageTranscoder.sampleSizeFor(width, height, maxLongEdge);
+        int sampledWidth = ceilDiv(width, sampleSize);
+        int sampledHeight = ceilDiv(height, sampleSize);
+
+        // Sampled source coordinates to output coordinates
         Matrix matrix = new Matrix();
-        matrix.postRotate(degrees);
-        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        float scale = Math.min(1f, (float) maxLongEdge / Math.max(sampledWidth, sampledHeight));
+        matrix.postScale(scale, scale);
+        matrix.postConcat(orientationMatrix(orientation));
+        RectF bounds = new RectF(0, 0, sampledWidth, sampledHeight);
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+
+        if (matrix.isIdentity()) {
+            return decodeSampled(source, sampleSize, sampledWidth, sampledHeight, pool);
+        }
+
+        Bitmap output = obtain(pool, Math.round(bounds.width()), Math.round(bounds.height()), true);
+        try {
+            drawBands(source, width, height, sampleSize, matrix, output, pool);
+        } catch (IOException e) {
+            // Formats without region decoding support; still only sampled, not full size
+            Log.w(TAG, "Band decode unavailable, drawing whole image: " + e.getMessage());
+            Bitmap sampled = decodeSampled(source, sampleSize, sampledWidth, sampledHeight, pool);
+            new Canvas(output).drawBitmap(sampled, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+            release(pool, sampled);
+        }
+        return output;
+    }
+
+    private static Bitmap decodeSampled(Source source, int sampleSize, int width, int height, BitmapPool pool)
+            throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        options.inBitmap = pool != null ? pool.getDirty(width, height, Bitmap.Config.ARGB_8888) : null;
+        Bitmap decoded;
+        try (InputStream in = source.open()) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap did not fit after all; decode into a new one
+            release(pool, options.inBitmap);
+            options.inBitmap = null;
+            try (InputStream in = source.open()) {
+                decoded = BitmapFactory.decodeStream(in, null, options);
+            }
+        }
+        if (options.inBitmap != null && decoded != options.inBitmap) {
+            release(pool, options.inBitmap);
+        }
+        if (decoded == null) throw new IOException("Failed to decode image");
+        return decoded;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void drawBands(Source source, int width, int height, int sampleSize, Matrix matrix,
+                                  Bitmap output, BitmapPool pool) throws IOException {
+        // Band height is a multiple of the sample size so bands line up on sampled rows
+        int bandRows = Math.max(sampleSize, BAND_ROWS / sampleSize * sampleSize);
+        int bandWidth = ceilDiv(width, sampleSize);
+        int bandHeight = bandRows / sampleSize;
+
+        Canvas canvas = new Canvas(output);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inBitmap = obtain(pool, bandWidth, bandHeight, false);
+
+        try (InputStream in = source.open()) {
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(in, false);
+            try {
+                for (int top = 0; top < height; top += bandRows) {
+                    int bottom = Math.min(height, top + bandRows);
+                    Bitmap band = decoder.decodeRegion(new Rect(0, top, width, bottom), options);
+                    if (band == null) throw new IOException("Failed to decode rows " + top + "-" + bottom);
+
+                    Matrix bandMatrix = new Matrix();
+                    bandMatrix.setTranslate(0, top / sampleSize);
+                    bandMatrix.postConcat(matrix);
+                    canvas.save();
+                    canvas.concat(bandMatrix);
+                    // The reused band bitmap keeps its size, so the last, shorter band is clipped
+                    canvas.clipRect(0, 0, bandWidth, ceilDiv(bottom - top, sampleSize));
+                    canvas.drawBitmap(band, 0, 0, paint);
+                    canvas.restore();
+                    if (band != options.inBitmap) band.recycle();
+                }
+            } finally {
+                decoder.recycle();
+            }
+        } finally {
+            release(pool, options.inBitmap);
+        }
+    }
+
+    /** EXIF orientation of {@code source}, or {@link ExifInterface#ORIENTATION_NORMAL} if unknown. */
+    static int readOrientation(Source source) {
+        try (InputStream in = source.open()) {
+            return new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            Log.w(TAG, "No EXIF orientation: " + e.getMessage());
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /** Maps stored pixels to upright ones; translation is left to the caller. */
+    static Matrix orientationMatrix(int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(270);
+                break;
+            default:
+                break;
+        }
+        return matrix;
+    }
+
+    private static Bitmap obtain(BitmapPool pool, int width, int height, boolean clear) {
+        if (pool == null) return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        return clear ? pool.get(width, height, Bitmap.Config.ARGB_8888) : pool.getDirty(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    static void release(BitmapPool pool, Bitmap bitmap) {
+        if (bitmap == null) return;
+        if (pool != null) {
+            pool.put(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
     }
 }
@@ -5,6 +5,8 @@ import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.OpenableColumns;
 import android.util.Log;
 import android.view.Menu;
@@ -18,50 +20,63 @@ import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final int FILE_PICK_REQUEST = 100;
     private static final int ADD_IMAGE_REQUEST = 101;
-
-    private String CLOUD_NAME;
-    private String API_KEY;
-    private String API_SECRET;
+    private static final int SEARCH_RESULT_LIMIT = 200;
+    // Typing pauses shorter than this coalesce into one search
+    private static final long SEARCH_DEBOUNCE_MS = 250;
 
     private RecyclerView recyclerView;
     private ImageGalleryAdapter adapter;
-    private List<ImageEntry> imageEntries = new ArrayList<>();
     private DatabaseHelper dbHelper;
 
+    // Change version the gallery reflects, and the active search query if any
+    private long appliedVersion;
+    private String currentQuery;
+    // Bumped for every search or reload; results of an older search are dropped
+    private long searchGeneration;
+    private Runnable pendingSearch;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService syncExecutor = Executors.newSingleThreadExecutor();
+    // Gallery reads and searches; separate from syncExecutor so they never wait behind a long
+    // sync or refresh
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private final ImageChange.Listener changeListener =
+            change -> mainHandler.post(() -> onImagesChanged(change));
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        // ✅ Load secrets from res/values/secrets.xml
-        CLOUD_NAME = getString(R.string.cloudinary_cloud_name);
-        API_KEY = getString(R.string.cloudinary_api_key);
-        API_SECRET = getString(R.string.cloudinary_api_secret);
-
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
         if (getSupportActionBar() != null) {
             getSupportActionBar().setDisplayShowTitleEnabled(false);
         }
 
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
         recyclerView = findViewById(R.id.recycler_view);
         recyclerView.setLayoutManager(new GridLayoutManager(this, 2));
+        // Empty until the first page has been read in the background
+        adapter = new ImageGalleryAdapter(this, new ArrayList<>(), searchExecutor);
+        recyclerView.setAdapter(adapter);
 
         FloatingActionButton fabCamera = findViewById(R.id.fab_camera);
         fabCamera.setOnClickListener(v -> {
@@ -86,44 +101,114 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        dbHelper.addChangeListener(changeListener);
         loadImages();
+
+        // Retry cloud writes left over from earlier sessions
+        CloudOutbox.getInstance(this).drain();
+        // Thumbnail new entries as they are saved, and backfill older ones
+        ThumbnailGenerator.getInstance(this).start();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        loadImages();
+        // Deltas are applied as they arrive; only reload if one was missed
+        if (dbHelper.getChangeVersion() != appliedVersion) {
+            reloadCurrentView();
+        }
     }
 
-    private void loadImages() {
-        imageEntries = dbHelper.getAllImages();
-        if (adapter == null) {
-            adapter = new ImageGalleryAdapter(this, imageEntries);
-            recyclerView.setAdapter(adapter);
-        } else {
-            adapter.setFilteredList(imageEntries);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        dbHelper.removeChangeListener(changeListener);
+        cancelPendingSearch();
+        // Reads already posted back would otherwise queue more work on the stopped executors
+        mainHandler.removeCallbacksAndMessages(null);
+        syncExecutor.shutdown();
+        searchExecutor.shutdown();
+    }
+
+    private void onImagesChanged(ImageChange change) {
+        if (change.getVersion() <= appliedVersion) return;   // already covered by a reload
+
+        if (currentQuery != null) {
+            reloadCurrentView();
+            return;
         }
+
+        // Rows are read in change order behind any pending reload, and applied on the main thread
+        long generation = searchGeneration;
+        searchExecutor.execute(() -> {
+            List<ImageEntry> rows = change.getType() == ImageChange.Type.DELETED
+                    ? Collections.emptyList()
+                    : dbHelper.getImageSummariesByIds(change.getIds());
+            mainHandler.post(() -> applyChange(change, rows, generation));
+        });
     }
 
-    private void filterImages(String query) {
-        List<ImageEntry> allImages = dbHelper.getAllImages();
-        List<ImageEntry> filtered = new ArrayList<>();
+    private void applyChange(ImageChange change, List<ImageEntry> rows, long generation) {
+        // A reload or search started since the read already covers this change
+        if (generation != searchGeneration || change.getVersion() <= appliedVersion) return;
 
-        if (query == null || query.trim().isEmpty()) {
-            filtered.addAll(allImages);
+        if (change.getVersion() == appliedVersion + 1 && adapter.applyChange(change, rows)) {
+            appliedVersion = change.getVersion();
         } else {
-            String lower = query.toLowerCase();
-            for (ImageEntry entry : allImages) {
-                if ((entry.getTitle() != null && entry.getTitle().toLowerCase().contains(lower)) ||
-                        (entry.getDescription() != null && entry.getDescription().toLowerCase().contains(lower))) {
-                    filtered.add(entry);
-                }
-            }
+            loadImages();
+        }
+    }
+
+    private void reloadCurrentView() {
+        if (currentQuery != null) {
+            filterImages(currentQuery);
+        } else {
+            loadImages();
         }
+    }
+
+    private void loadImages() {
+        long generation = cancelPendingSearch();
+        currentQuery = null;
+        searchExecutor.execute(() -> {
+            // Read the version first: a change racing with the page read is then re-applied, and
+            // inserts that are already present are skipped
+            long version = dbHelper.getChangeVersion();
+            // Only the first page is read here; further pages load as the user scrolls
+            PagedImageList pagedList = new PagedImageList(dbHelper::getImageSummariesPage);
+            mainHandler.post(() -> {
+                if (generation != searchGeneration) return;
+                appliedVersion = version;
+                adapter.setPagedList(pagedList);
+            });
+        });
+    }
 
-        if (adapter != null) {
-            adapter.setFilteredList(filtered);
+    private void filterImages(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            loadImages();
+            return;
         }
+
+        long generation = cancelPendingSearch();
+        currentQuery = query;
+        pendingSearch = () -> searchExecutor.execute(() -> {
+            long version = dbHelper.getChangeVersion();
+            List<ImageEntry> filtered = dbHelper.searchImages(query, SEARCH_RESULT_LIMIT);
+            mainHandler.post(() -> {
+                if (generation != searchGeneration || adapter == null) return;
+                appliedVersion = version;
+                adapter.setFilteredList(filtered);
+            });
+        });
+        mainHandler.postDelayed(pendingSearch, SEARCH_DEBOUNCE_MS);
+    }
+
+    // Drops a search that has not started yet and marks running ones stale
+    private long cancelPendingSearch() {
+        if (pendingSearch != null) mainHandler.removeCallbacks(pendingSearch);
+        pendingSearch = null;
+        return ++searchGeneration;
     }
 
     private void pickImageFromFiles() {
@@ -140,69 +225,52 @@ public class MainActivity extends AppCompatActivity {
         if (requestCode == FILE_PICK_REQUEST && resultCode == RESULT_OK && data != null) {
             Uri fileUri = data.getData();
             if (fileUri != null) {
-                uploadFileToCloudinary(fileUri);
+                stagePickedFile(fileUri);
             } else {
                 Toast.makeText(this, "File selection failed", Toast.LENGTH_SHORT).show();
             }
-        } else if (requestCode == ADD_IMAGE_REQUEST && resultCode == RESULT_OK) {
-            loadImages();
         }
     }
 
-    private void uploadFileToCloudinary(Uri uri) {
-        try (InputStream inputStream = getContentResolver().openInputStream(uri);
-             ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-
-            if (inputStream == null) {
-                Toast.makeText(this, "Unable to open image", Toast.LENGTH_SHORT).show();
-                return;
+    // The picked file is copied into app storage and uploaded by the outbox once it is saved, so
+    // the upload is resumable and survives failures and process death
+    private void stagePickedFile(Uri uri) {
+        CloudIoExecutor.getInstance().execute(CloudIoExecutor.Priority.USER, () -> {
+            File dir = new File(getFilesDir(), "picked");
+            File staged = new File(dir, "pick_" + System.currentTimeMillis() + ".jpg");
+            try (InputStream inputStream = getContentResolver().openInputStream(uri)) {
+                if (inputStream == null) {
+                    runOnUiThread(() -> Toast.makeText(this, "Unable to open image", Toast.LENGTH_SHORT).show());
+                    return;
+                }
+                if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+                copy(inputStream, staged);
+                String contentHash = UploadDeduplicator.sha256(staged);
+                String fileName = getFileName(uri);
+
+                runOnUiThread(() -> {
+                    Intent intent = new Intent(MainActivity.this, AddImageActivity.class);
+                    intent.putExtra("PICKED_FILE", staged.getAbsolutePath());
+                    intent.putExtra("DEFAULT_TITLE", fileName);
+                    intent.putExtra("CONTENT_HASH", contentHash);
+                    intent.putExtra("SOURCE", "FILES");
+                    startActivityForResult(intent, ADD_IMAGE_REQUEST);
+                });
+            } catch (Exception e) {
+                Log.e("FileError", "Error processing file", e);
+                staged.delete();
+                runOnUiThread(() -> Toast.makeText(this, "Error reading file", Toast.LENGTH_SHORT).show());
             }
+        });
+    }
 
-            byte[] buffer = new byte[1024];
+    private static void copy(InputStream in, File target) throws IOException {
+        try (OutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[64 * 1024];
             int len;
-            while ((len = inputStream.read(buffer)) > 0) {
-                bos.write(buffer, 0, len);
+            while ((len = in.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
             }
-
-            byte[] imageData = bos.toByteArray();
-
-            new Thread(() -> {
-                try {
-                    Cloudinary cloudinary = new Cloudinary(ObjectUtils.asMap(
-                            "cloud_name", CLOUD_NAME,
-                            "api_key", API_KEY,
-                            "api_secret", API_SECRET
-                    ));
-
-                    Map uploadResult = cloudinary.uploader().upload(imageData, ObjectUtils.emptyMap());
-
-                    String imageUrl = uploadResult.get("secure_url").toString();
-                    String publicId = uploadResult.get("public_id").toString();
-
-                    Log.d("CloudinaryUpload", "Upload successful! URL: " + imageUrl + ", Public ID: " + publicId);
-
-                    String fileName = getFileName(uri);
-
-                    runOnUiThread(() -> {
-                        Intent intent = new Intent(MainActivity.this, AddImageActivity.class);
-                        intent.putExtra("IMAGE_PATH", imageUrl);
-                        intent.putExtra("DEFAULT_TITLE", fileName);
-                        intent.putExtra("PUBLIC_ID", publicId);
-                        intent.putExtra("SOURCE", "FILES");
-                        startActivityForResult(intent, ADD_IMAGE_REQUEST);
-                    });
-
-                } catch (Exception e) {
-                    Log.e("UploadError", "Upload failed", e);
-                    runOnUiThread(() ->
-                            Toast.makeText(this, "Upload failed", Toast.LENGTH_SHORT).show()
-                    );
-                }
-            }).start();
-
-        } catch (Exception e) {
-            Log.e("FileError", "Error processing file", e);
-            Toast.makeText(this, "Error reading file", Toast.LENGTH_SHORT).show();
         }
     }
 
@@ -233,12 +301,27 @@ public class MainActivity extends AppCompatActivity {
         int id = item.getItemId();
 
         if (id == R.id.action_sync) {
-            new Thread(() -> {
-                dbHelper.syncAllMetadataToCloudinary();
+            // Runs off the cloud pool: queuing blocks while the background lane is full
+            syncExecutor.execute(() -> {
+                MetadataSyncResult result = dbHelper.syncAllMetadataToCloudinary();
                 runOnUiThread(() ->
-                        Toast.makeText(this, "Metadata synced to Cloudinary", Toast.LENGTH_SHORT).show()
+                        Toast.makeText(this, "Metadata sync: " + result.getPushedCount() + " changed, "
+                                + result.getSkippedCount() + " already up to date", Toast.LENGTH_SHORT).show()
                 );
-            }).start();
+            });
+            return true;
+
+        } else if (id == R.id.action_refresh_from_cloud) {
+            syncExecutor.execute(() -> {
+                try {
+                    ReconcileResult result = new CloudReconciler(this).run();
+                    runOnUiThread(() -> Toast.makeText(this, "Refreshed from cloud: " + result.getInsertedCount()
+                            + " new, " + result.getUpdatedCount() + " updated", Toast.LENGTH_SHORT).show());
+                } catch (Exception e) {
+                    Log.e("CloudReconciler", "Refresh failed", e);
+                    runOnUiThread(() -> Toast.makeText(this, "Refresh from cloud failed", Toast.LENGTH_SHORT).show());
+                }
+            });
             return true;
 
         } else if (id == R.id.action_logout) {
@@ -0,0 +1,29 @@
+package com.example.imagedescriber;
+
+/**
+ * Outcome of {@link DatabaseHelper#syncAllMetadataToCloudinary}: how many uploaded entries were
+ * queued for a metadata push and how many were already up to date.
+ */
+public class MetadataSyncResult {
+
+    private final int pushedCount;
+    private final int skippedCount;
+
+    public MetadataSyncResult(int pushedCount, int skippedCount) {
+        this.pushedCount = pushedCount;
+        this.skippedCount = skippedCount;
+    }
+
+    public int getPushedCount() {
+        return pushedCount;
+    }
+
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    @Override
+    public String toString() {
+        return pushedCount + " pushed, " + skippedCount + " unchanged";
+    }
+}
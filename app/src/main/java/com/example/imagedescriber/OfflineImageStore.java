@@ -0,0 +1,317 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Persistent copies of Cloudinary originals so entries stay viewable and exportable without a
+ * connection. Files live under the app's files directory, named by a hash of their
+ * {@code public_id}; a file's modification time is its last use. The most recently viewed or
+ * captured entries are pinned, and once the store grows past its byte budget the least recently
+ * used unpinned files are deleted.
+ */
+public class OfflineImageStore {
+
+    private static final String TAG = "OfflineImageStore";
+
+    private static final String DIR = "originals";
+    private static final String PREFS = "offline_images";
+    private static final String KEY_PINNED = "pinned";
+    private static final String KEY_BUDGET = "byte_budget";
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    public static final long DEFAULT_BYTE_BUDGET = 200L * 1024 * 1024;
+    static final int MAX_PINNED = 50;
+    static final int PREFETCH_LIMIT = 20;
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private static OfflineImageStore instance;
+
+    private final Context appContext;
+    private final File dir;
+    private final SharedPreferences prefs;
+    // Pinned public ids, oldest first
+    private final LinkedHashSet<String> pinned = new LinkedHashSet<>();
+    // Farmers and locations already prefetched in this process
+    private final Set<String> prefetched = Collections.synchronizedSet(new HashSet<>());
+
+    public static synchronized OfflineImageStore getInstance(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            instance = new OfflineImageStore(app, new File(app.getFilesDir(), DIR),
+                    app.getSharedPreferences(PREFS, Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    OfflineImageStore(Context appContext, File dir, SharedPreferences prefs) {
+        this.appContext = appContext;
+        this.dir = dir;
+        this.prefs = prefs;
+        dir.mkdirs();
+        String saved = prefs.getString(KEY_PINNED, "");
+        if (!saved.isEmpty()) pinned.addAll(Arrays.asList(saved.split("\n")));
+    }
+
+    public long getByteBudget() {
+        return prefs.getLong(KEY_BUDGET, DEFAULT_BYTE_BUDGET);
+    }
+
+    public void setByteBudget(long bytes) {
+        prefs.edit().putLong(KEY_BUDGET, bytes).apply();
+        trim();
+    }
+
+    /**
+     * Something {@link ImageLoader} can load for {@code entry}: its local file if that still
+     * exists, else the stored original, else the remote URL.
+     */
+    public String resolve(ImageEntry entry) {
+        String path = entry.getImagePath();
+        if (path != null && !DeliveryUrlBuilder.isRemote(path) && !path.startsWith("content://") && new File(path).exists()) {
+            return path;
+        }
+        File stored = get(entry.getPublicId());
+        if (stored != null) return stored.getAbsolutePath();
+        return path != null && !path.trim().isEmpty() ? path : entry.getCloudinaryUrl();
+    }
+
+    /** The stored original for {@code publicId}, or null. Counts as a use for eviction. */
+    public File get(String publicId) {
+        if (publicId == null) return null;
+        File file = fileFor(publicId);
+        if (!file.exists()) return null;
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /** Moves an already uploaded local file into the store and pins it, e.g. right after capture. */
+    public void put(String publicId, File source) {
+        if (publicId == null || source == null || !source.exists()) return;
+        File target = fileFor(publicId);
+        try {
+            if (!source.renameTo(target)) {
+                copy(new FileInputStream(source), target);
+                source.delete();
+            }
+            target.setLastModified(System.currentTimeMillis());
+            pin(publicId);
+            trim();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to store " + publicId, e);
+        }
+    }
+
+    /**
+     * Downloads the original of {@code entry} if it is not stored yet. Blocks on the network;
+     * call from a worker thread.
+     */
+    public File fetch(ImageEntry entry) throws IOException {
+        File stored = get(entry.getPublicId());
+        if (stored != null) return stored;
+        String url = entry.getCloudinaryUrl() != null ? entry.getCloudinaryUrl() : entry.getImagePath();
+        if (entry.getPublicId() == null || !DeliveryUrlBuilder.isRemote(url)) return null;
+
+        File target = fileFor(entry.getPublicId());
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        try {
+            copy(connection.getInputStream(), target);
+        } finally {
+            connection.disconnect();
+        }
+        trim();
+        return target;
+    }
+
+    /** Pins {@code publicId} as recently used; the oldest pin is released past {@link #MAX_PINNED}. */
+    public synchronized void pin(String publicId) {
+        if (publicId == null) return;
+        pinned.remove(publicId);
+        pinned.add(publicId);
+        while (pinned.size() > MAX_PINNED) {
+            pinned.remove(pinned.iterator().next());
+        }
+        prefs.edit().putString(KEY_PINNED, String.join("\n", pinned)).apply();
+    }
+
+    /** Unpins and deletes the stored original of a deleted entry. */
+    public synchronized void remove(String publicId) {
+        if (publicId == null) return;
+        if (pinned.remove(publicId)) {
+            prefs.edit().putString(KEY_PINNED, String.join("\n", pinned)).apply();
+        }
+        fileFor(publicId).delete();
+    }
+
+    /**
+     * Pins the viewed entry and stores its original in the background. Call once the viewer has
+     * loaded the image: the bytes are copied from Glide's disk cache, and downloaded again only
+     * when they are not there and the network is unmetered.
+     */
+    public void onViewed(ImageEntry entry) {
+        if (entry.getPublicId() == null) return;
+        pin(entry.getPublicId());
+        if (fileFor(entry.getPublicId()).exists()) return;
+        CloudIoExecutor.getInstance().execute(CloudIoExecutor.Priority.BACKGROUND, () -> {
+            try {
+                if (storeFromGlideCache(entry) || !isOnUnmeteredNetwork()) return;
+                fetch(entry);
+            } catch (IOException e) {
+                Log.d(TAG, "Could not store " + entry.getPublicId() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // True if Glide's data cache held the original and it was copied into the store
+    private boolean storeFromGlideCache(ImageEntry entry) throws IOException {
+        String url = entry.getCloudinaryUrl() != null ? entry.getCloudinaryUrl() : entry.getImagePath();
+        if (!DeliveryUrlBuilder.isRemote(url)) return false;
+        FutureTarget<File> cached = Glide.with(appContext).downloadOnly().load(url).onlyRetrieveFromCache(true).submit();
+        try {
+            copy(new FileInputStream(cached.get()), fileFor(entry.getPublicId()));
+            trim();
+            return true;
+        } catch (ExecutionException e) {
+            // Not in the cache
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            Glide.with(appContext).clear(cached);
+        }
+    }
+
+    /**
+     * Stores the originals of the farmer's and location's most recent entries in the background,
+     * if on an unmetered network. Each farmer and location is prefetched at most once per process,
+     * and every download is its own background task so uploads and user work can run in between.
+     */
+    public void requestPrefetch(String farmerName, String location) {
+        if (!isOnUnmeteredNetwork()) return;
+        boolean farmer = farmerName != null && prefetched.add("farmer:" + farmerName);
+        boolean place = location != null && prefetched.add("location:" + location);
+        if (!farmer && !place) return;
+
+        boolean accepted = CloudIoExecutor.getInstance().execute(CloudIoExecutor.Priority.BACKGROUND, () -> {
+            DatabaseHelper dbHelper = DatabaseHelper.getInstance(appContext);
+            Set<String> queued = new HashSet<>();
+            List<ImageEntry> entries = new ArrayList<>();
+            if (farmer) entries.addAll(dbHelper.getUploadedImagesByFarmer(farmerName, PREFETCH_LIMIT));
+            if (place) entries.addAll(dbHelper.getUploadedImagesByLocation(location, PREFETCH_LIMIT));
+            for (ImageEntry entry : entries) {
+                if (fileFor(entry.getPublicId()).exists() || !queued.add(entry.getPublicId())) continue;
+                CloudIoExecutor.getInstance().execute(CloudIoExecutor.Priority.BACKGROUND, () -> {
+                    if (!isOnUnmeteredNetwork()) return;
+                    try {
+                        fetch(entry);
+                    } catch (IOException e) {
+                        Log.w(TAG, "Prefetch of " + entry.getPublicId() + " failed: " + e.getMessage());
+                    }
+                });
+            }
+            Log.d(TAG, "Queued prefetch of " + queued.size() + " of " + entries.size() + " entries for " + farmerName + " / " + location);
+        });
+        if (!accepted) {
+            // Dropped on a full queue; a later view may ask again
+            if (farmer) prefetched.remove("farmer:" + farmerName);
+            if (place) prefetched.remove("location:" + location);
+        }
+    }
+
+    public long getSizeBytes() {
+        long total = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) total += file.length();
+        }
+        return total;
+    }
+
+    /** Deletes least recently used unpinned originals until the store fits its budget. */
+    synchronized void trim() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        long total = getSizeBytes();
+        long budget = getByteBudget();
+        if (total <= budget) return;
+
+        Set<String> pinnedNames = new LinkedHashSet<>();
+        for (String publicId : pinned) pinnedNames.add(fileFor(publicId).getName());
+
+        List<File> byAge = new ArrayList<>(Arrays.asList(files));
+        Collections.sort(byAge, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        int evicted = 0;
+        for (File file : byAge) {
+            if (total <= budget) break;
+            if (pinnedNames.contains(file.getName()) || file.getName().endsWith(PARTIAL_SUFFIX)) continue;
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                evicted++;
+            }
+        }
+        Log.d(TAG, "Evicted " + evicted + " originals; store is " + total + " of " + budget + " bytes");
+    }
+
+    private boolean isOnUnmeteredNetwork() {
+        ConnectivityManager connectivity = (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkCapabilities capabilities = connectivity.getNetworkCapabilities(connectivity.getActiveNetwork());
+        return capabilities != null
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+    }
+
+    File fileFor(String publicId) {
+        try {
+            return new File(dir, UploadDeduplicator.sha256(new ByteArrayInputStream(publicId.getBytes(StandardCharsets.UTF_8))));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Written to a unique temporary name first, so a partial or concurrent download is never
+    // mistaken for an original
+    private void copy(InputStream in, File target) throws IOException {
+        File partial = File.createTempFile(target.getName(), PARTIAL_SUFFIX, dir);
+        try (InputStream source = in; OutputStream out = new FileOutputStream(partial)) {
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = source.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
+            }
+        }
+        if (!partial.renameTo(target)) {
+            partial.delete();
+            throw new IOException("Could not move " + partial + " into place");
+        }
+    }
+}
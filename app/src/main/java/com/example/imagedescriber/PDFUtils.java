@@ -2,11 +2,8 @@ package com.example.imagedescriber;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.net.Uri;
 import android.util.Log;
 
-import com.bumptech.glide.Glide;
 import com.itextpdf.text.BaseColor;
 import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
@@ -29,6 +26,8 @@ import java.util.Locale;
 
 public class PDFUtils {
 
+    private static final int REPORT_IMAGE_PX = 800;
+
     public static File generatePDF(Context context, ImageEntry entry) {
         File pdfFile = new File(context.getExternalFilesDir(null), "Report_" + System.currentTimeMillis() + ".pdf");
 
@@ -47,11 +46,14 @@ public class PDFUtils {
             canvas.rectangle(rect);
 
             // ✅ Add logo (optional)
-            try {
-                InputStream logoStream = context.getAssets().open("logo_app.png");
-                Bitmap logoBitmap = BitmapFactory.decodeStream(logoStream);
+            try (InputStream logoStream = context.getAssets().open("logo_app.png")) {
+                // Already a PNG, so the bytes go into the document without decoding a bitmap
                 ByteArrayOutputStream logoBytes = new ByteArrayOutputStream();
-                logoBitmap.compress(Bitmap.CompressFormat.PNG, 100, logoBytes);
+                byte[] buffer = new byte[8 * 1024];
+                int len;
+                while ((len = logoStream.read(buffer)) > 0) {
+                    logoBytes.write(buffer, 0, len);
+                }
                 Image logo = Image.getInstance(logoBytes.toByteArray());
                 logo.scaleToFit(80, 80);
                 logo.setAlignment(Image.ALIGN_LEFT);
@@ -69,28 +71,19 @@ public class PDFUtils {
 
             // ✅ Load image (remote/local)
             try {
-                Bitmap bitmap = null;
-
-                if (entry.getImagePath() != null && entry.getImagePath().startsWith("http")) {
-                    bitmap = Glide.with(context)
-                            .asBitmap()
-                            .load(entry.getImagePath())
-                            .submit()
-                            .get();
-                } else if (entry.getImagePath() != null) {
-                    Uri uri = Uri.parse(entry.getImagePath());
-                    InputStream inputStream = context.getContentResolver().openInputStream(uri);
-                    bitmap = BitmapFactory.decodeStream(inputStream);
-                }
-
-                if (bitmap != null) {
-                    ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                    bitmap.compress(Bitmap.CompressFormat.JPEG, 90, stream);
-                    Image img = Image.getInstance(stream.toByteArray());
-                    img.scaleToFit(400, 400);
-                    img.setAlignment(Image.ALIGN_CENTER);
-                    document.add(img);
-                    document.add(new Paragraph("\n"));
+                String source = OfflineImageStore.getInstance(context).resolve(entry);
+                if (source != null) {
+                    // Twice the 400pt box the image is scaled into, enough for a sharp print. The
+                    // bitmap goes back to the shared pool once it is encoded.
+                    ImageLoader.getInstance(context).withBitmap(source, REPORT_IMAGE_PX, REPORT_IMAGE_PX, bitmap -> {
+                        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, stream);
+                        Image img = Image.getInstance(stream.toByteArray());
+                        img.scaleToFit(400, 400);
+                        img.setAlignment(Image.ALIGN_CENTER);
+                        document.add(img);
+                        document.add(new Paragraph("\n"));
+                    });
                 }
 
             } catch (Exception e) {
@@ -0,0 +1,214 @@
+package com.example.imagedescriber;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gallery list backed by keyset pages of (timestamp, id). Only the most recently used pages are
+ * kept in memory; evicted pages are re-read from their stored start key when scrolled back into view.
+ */
+public class PagedImageList {
+
+    public interface PageSource {
+        List<ImageEntry> loadPage(long beforeTimestamp, long beforeId, int limit);
+    }
+
+    public static final int DEFAULT_PAGE_SIZE = 30;
+    public static final int DEFAULT_RESIDENT_PAGES = 5;
+
+    private final PageSource source;
+    private final int pageSize;
+
+    // pageKeys[i] is the (timestamp, id) key that page i starts after; pageSizes[i] its row count
+    private final List<long[]> pageKeys = new ArrayList<>();
+    private final List<Integer> pageSizes = new ArrayList<>();
+    private final Map<Integer, List<ImageEntry>> residentPages;
+    private int loadedCount = 0;
+    private boolean endReached = false;
+
+    public PagedImageList(PageSource source) {
+        this(source, DEFAULT_PAGE_SIZE, DEFAULT_RESIDENT_PAGES);
+    }
+
+    public PagedImageList(PageSource source, int pageSize, int maxResidentPages) {
+        this.source = source;
+        this.pageSize = pageSize;
+        this.residentPages = new LinkedHashMap<Integer, List<ImageEntry>>(maxResidentPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<ImageEntry>> eldest) {
+                return size() > maxResidentPages;
+            }
+        };
+        pageKeys.add(new long[]{Long.MAX_VALUE, Long.MAX_VALUE});
+        loadNextPage();
+    }
+
+    public int size() {
+        return loadedCount;
+    }
+
+    public boolean hasMore() {
+        return !endReached;
+    }
+
+    /**
+     * Returns the entry at {@code position}, reloading its page if it was evicted.
+     * May return null if rows were deleted since the page was first counted.
+     */
+    public ImageEntry get(int position) {
+        int page = 0;
+        while (position >= pageSizes.get(page)) {
+            position -= pageSizes.get(page);
+            page++;
+        }
+        List<ImageEntry> entries = residentPage(page);
+        return position < entries.size() ? entries.get(position) : null;
+    }
+
+    private List<ImageEntry> residentPage(int page) {
+        List<ImageEntry> entries = residentPages.get(page);
+        if (entries == null) {
+            long[] key = pageKeys.get(page);
+            entries = new ArrayList<>(source.loadPage(key[0], key[1], pageSizes.get(page)));
+            residentPages.put(page, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Fetches the page after the last loaded one.
+     *
+     * @return the number of entries appended
+     */
+    public int loadNextPage() {
+        if (endReached) return 0;
+        long[] key = nextPageKey();
+        return appendPage(key, readPage(key));
+    }
+
+    /** Start key of the page after the last loaded one, for {@link #readPage}. */
+    public long[] nextPageKey() {
+        return pageKeys.get(pageSizes.size());
+    }
+
+    /** Reads the page starting after {@code key}. Touches no list state, so it may run on a worker thread. */
+    public List<ImageEntry> readPage(long[] key) {
+        return source.loadPage(key[0], key[1], pageSize);
+    }
+
+    /**
+     * Appends a page read with {@link #readPage}. Ignored if another page was added since
+     * {@code key} was taken.
+     *
+     * @return the number of entries appended
+     */
+    public int appendPage(long[] key, List<ImageEntry> entries) {
+        if (endReached || nextPageKey() != key) return 0;
+
+        int page = pageSizes.size();
+        if (entries.size() < pageSize) {
+            endReached = true;
+        }
+        if (entries.isEmpty()) return 0;
+
+        residentPages.put(page, new ArrayList<>(entries));
+        ImageEntry last = entries.get(entries.size() - 1);
+        pageKeys.add(new long[]{last.getTimestamp(), last.getId()});
+        pageSizes.add(entries.size());
+        loadedCount += entries.size();
+        return entries.size();
+    }
+
+    /** Position of the entry with {@code id} among resident pages, or -1 if it is not in memory. */
+    public int indexOfResident(long id) {
+        int start = 0;
+        for (int page = 0; page < pageSizes.size(); page++) {
+            List<ImageEntry> entries = residentPages.get(page);
+            if (entries != null) {
+                for (int i = 0; i < entries.size(); i++) {
+                    if (entries.get(i).getId() == id) return start + i;
+                }
+            }
+            start += pageSizes.get(page);
+        }
+        return -1;
+    }
+
+    /** Replaces a resident entry in place; the caller guarantees its sort key did not change. */
+    public void replace(int position, ImageEntry entry) {
+        int page = 0;
+        while (position >= pageSizes.get(page)) {
+            position -= pageSizes.get(page);
+            page++;
+        }
+        residentPage(page).set(position, entry);
+    }
+
+    /** Removes a resident entry found through {@link #indexOfResident}. */
+    public void remove(int position) {
+        int page = 0;
+        while (position >= pageSizes.get(page)) {
+            position -= pageSizes.get(page);
+            page++;
+        }
+        residentPage(page).remove(position);
+        pageSizes.set(page, pageSizes.get(page) - 1);
+        loadedCount--;
+    }
+
+    /**
+     * Inserts a new entry at its sort position within the loaded range.
+     *
+     * @return the adapter position it landed at, or -1 if it sorts after the loaded range and
+     * will arrive with a later page
+     */
+    public int insert(ImageEntry entry) {
+        if (pageSizes.isEmpty()) {
+            List<ImageEntry> entries = new ArrayList<>();
+            entries.add(entry);
+            residentPages.put(0, entries);
+            pageKeys.add(new long[]{entry.getTimestamp(), entry.getId()});
+            pageSizes.add(1);
+            loadedCount = 1;
+            return 0;
+        }
+
+        int start = 0;
+        int page = 0;
+        // Page i holds the keys sorting after pageKeys[i] up to and including pageKeys[i + 1]
+        while (page < pageSizes.size() - 1 && !sortsBefore(pageKeys.get(page + 1), entry)) {
+            start += pageSizes.get(page);
+            page++;
+        }
+        if (page == pageSizes.size() - 1 && hasMore() && !sortsBefore(pageKeys.get(page + 1), entry)) {
+            return -1;
+        }
+
+        List<ImageEntry> entries = residentPages.get(page);
+        if (entries == null) {
+            // The row is already in the table, so growing the page count is enough for the reload
+            pageSizes.set(page, pageSizes.get(page) + 1);
+            loadedCount++;
+            return start;
+        }
+        int offset = 0;
+        while (offset < entries.size() && !sortsBefore(entries.get(offset), entry)) {
+            offset++;
+        }
+        entries.add(offset, entry);
+        pageSizes.set(page, pageSizes.get(page) + 1);
+        loadedCount++;
+        return start + offset;
+    }
+
+    // True if the entry is newer than (sorts before) the existing row or key
+    private static boolean sortsBefore(ImageEntry existing, ImageEntry entry) {
+        return sortsBefore(new long[]{existing.getTimestamp(), existing.getId()}, entry);
+    }
+
+    private static boolean sortsBefore(long[] key, ImageEntry entry) {
+        return entry.getTimestamp() > key[0] || (entry.getTimestamp() == key[0] && entry.getId() > key[1]);
+    }
+}
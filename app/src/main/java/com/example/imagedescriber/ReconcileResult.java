@@ -0,0 +1,58 @@
+package com.example.imagedescriber;
+
+/**
+ * Row counts from applying cloud resources to the local table: new rows, rows refreshed from the
+ * cloud, rows already matching, and rows left alone because they have local edits not yet pushed.
+ */
+public class ReconcileResult {
+
+    private int insertedCount;
+    private int updatedCount;
+    private int unchangedCount;
+    private int skippedCount;
+
+    void addInserted() {
+        insertedCount++;
+    }
+
+    void addUpdated() {
+        updatedCount++;
+    }
+
+    void addUnchanged() {
+        unchangedCount++;
+    }
+
+    void addSkipped() {
+        skippedCount++;
+    }
+
+    void add(ReconcileResult other) {
+        insertedCount += other.insertedCount;
+        updatedCount += other.updatedCount;
+        unchangedCount += other.unchangedCount;
+        skippedCount += other.skippedCount;
+    }
+
+    public int getInsertedCount() {
+        return insertedCount;
+    }
+
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    public int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    @Override
+    public String toString() {
+        return insertedCount + " inserted, " + updatedCount + " updated, " + unchangedCount + " unchanged, "
+                + skippedCount + " skipped with local edits";
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.imagedescriber;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ordered registry of versioned schema steps. Pending steps run in one transaction against a
+ * column set read once up front, and each step is timed.
+ */
+public class SchemaMigrator {
+
+    private static final String TAG = "SchemaMigrator";
+
+    public interface Step {
+        void apply(SQLiteDatabase db, TableSchema schema);
+    }
+
+    /** Columns of the migrated table, read once and kept current as steps add columns. */
+    public static class TableSchema {
+        private final String table;
+        private final Set<String> columns = new HashSet<>();
+
+        TableSchema(SQLiteDatabase db, String table) {
+            this.table = table;
+            try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null)) {
+                int name = cursor.getColumnIndexOrThrow("name");
+                while (cursor.moveToNext()) {
+                    columns.add(cursor.getString(name));
+                }
+            }
+        }
+
+        public boolean hasColumn(String column) {
+            return columns.contains(column);
+        }
+
+        /** Adds the column unless it already exists. */
+        public void addColumn(SQLiteDatabase db, String column, String type) {
+            if (columns.contains(column)) return;
+            db.execSQL("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+            columns.add(column);
+        }
+    }
+
+    private static class Migration {
+        final int version;
+        final String name;
+        final Step step;
+
+        Migration(int version, String name, Step step) {
+            this.version = version;
+            this.name = name;
+            this.step = step;
+        }
+    }
+
+    private final String table;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    public SchemaMigrator(String table) {
+        this.table = table;
+    }
+
+    /** Registers the step that brings the schema to {@code version}. Steps must be added in order. */
+    public SchemaMigrator add(int version, String name, Step step) {
+        if (!migrations.isEmpty() && migrations.get(migrations.size() - 1).version >= version) {
+            throw new IllegalArgumentException("Migration " + version + " registered out of order");
+        }
+        migrations.add(new Migration(version, name, step));
+        return this;
+    }
+
+    /**
+     * Applies every step with {@code fromVersion < version <= toVersion} atomically.
+     *
+     * @return elapsed milliseconds per applied step, in the order they ran
+     */
+    public Map<String, Long> migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        long start = SystemClock.elapsedRealtime();
+
+        db.beginTransaction();
+        try {
+            TableSchema schema = new TableSchema(db, table);
+            for (Migration migration : migrations) {
+                if (migration.version <= fromVersion || migration.version > toVersion) continue;
+
+                long stepStart = SystemClock.elapsedRealtime();
+                migration.step.apply(db, schema);
+                long elapsed = SystemClock.elapsedRealtime() - stepStart;
+                timings.put(migration.version + ": " + migration.name, elapsed);
+                Log.d(TAG, "Applied v" + migration.version + " (" + migration.name + ") in " + elapsed + " ms");
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.d(TAG, "Migrated " + table + " from v" + fromVersion + " to v" + toVersion
+                + " in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        return timings;
+    }
+}
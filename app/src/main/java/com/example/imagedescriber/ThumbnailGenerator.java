@@ -0,0 +1,167 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes a small JPEG for every entry into a dedicated directory and records it in
+ * {@code thumb_path}, so list screens never decode originals. New rows are picked up from the
+ * database's change feed, whichever path inserted them. Rows from before thumbnails existed are
+ * filled in by a backfill that pauses while the battery is low or power saving is on.
+ */
+public class ThumbnailGenerator {
+
+    private static final String TAG = "ThumbnailGenerator";
+
+    private static final String DIR = "thumbs";
+    // Covers a grid cell on common phone widths without upscaling
+    static final int THUMB_LONG_EDGE = 640;
+    private static final int THUMB_QUALITY = 80;
+    private static final int BACKFILL_BATCH = 20;
+    static final int MIN_BATTERY_PERCENT = 30;
+
+    private static ThumbnailGenerator instance;
+
+    private final Context appContext;
+    private final DatabaseHelper dbHelper;
+    private final File dir;
+    private final DeliveryUrlBuilder urlBuilder;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+    }, "thumbnails"));
+    private final ImageChange.Listener changeListener = change -> {
+        if (change.getType() == ImageChange.Type.INSERTED) {
+            for (long id : change.getIds()) enqueue(id);
+        }
+    };
+    private boolean started;
+
+    public static synchronized ThumbnailGenerator getInstance(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            instance = new ThumbnailGenerator(app, DatabaseHelper.getInstance(app), new File(app.getFilesDir(), DIR));
+        }
+        return instance;
+    }
+
+    ThumbnailGenerator(Context appContext, DatabaseHelper dbHelper, File dir) {
+        this.appContext = appContext;
+        this.dbHelper = dbHelper;
+        this.dir = dir;
+        this.urlBuilder = new DeliveryUrlBuilder(appContext.getString(R.string.cloudinary_cloud_name));
+        dir.mkdirs();
+    }
+
+    /** Starts following inserts and queues one backfill pass. Later calls do nothing. */
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        dbHelper.addChangeListener(changeListener);
+        executor.execute(this::backfill);
+    }
+
+    public void enqueue(long id) {
+        executor.execute(() -> {
+            ImageEntry entry = dbHelper.getImageById(id);
+            if (entry != null && entry.getThumbPath() == null) generate(entry);
+        });
+    }
+
+    /** Thumbnails every row that lacks one, in id order, until done or the battery gets low. */
+    void backfill() {
+        long afterId = 0;
+        int generated = 0;
+        List<ImageEntry> batch;
+        do {
+            batch = dbHelper.getImagesMissingThumbnail(afterId, BACKFILL_BATCH);
+            for (ImageEntry entry : batch) {
+                if (!batteryAllowsBackfill()) {
+                    Log.d(TAG, "Backfill paused for battery after " + generated + " thumbnails");
+                    return;
+                }
+                afterId = entry.getId();
+                if (generate(entry)) generated++;
+            }
+        } while (batch.size() == BACKFILL_BATCH);
+        Log.d(TAG, "Backfill generated " + generated + " thumbnails");
+    }
+
+    /** Generates and records the thumbnail; false if no source could be read. Runs on the executor. */
+    boolean generate(ImageEntry entry) {
+        File target = new File(dir, entry.getId() + ".jpg");
+        File partial = new File(dir, entry.getId() + ".jpg.part");
+        try {
+            String remote = urlBuilder.thumbnail(entry, THUMB_LONG_EDGE, 0);
+            File local = localSource(entry);
+            if (local != null || isContentUri(entry.getImagePath())) {
+                CountingBitmapPool pool = CountingBitmapPool.getInstance(appContext);
+                Bitmap bitmap = local != null ? ImageUtils.decode(local, THUMB_LONG_EDGE, pool)
+                        : ImageUtils.decode(appContext, Uri.parse(entry.getImagePath()), THUMB_LONG_EDGE, pool);
+                try {
+                    write(bitmap, partial);
+                } finally {
+                    pool.put(bitmap);
+                }
+            } else if (remote != null) {
+                // Cloudinary resizes it, so only a thumbnail's worth of bytes is downloaded
+                ImageLoader.getInstance(appContext).withBitmap(remote, THUMB_LONG_EDGE, THUMB_LONG_EDGE,
+                        bitmap -> write(bitmap, partial));
+            } else {
+                Log.w(TAG, "No image for entry " + entry.getId());
+                return false;
+            }
+
+            if (!partial.renameTo(target)) throw new IOException("Could not move " + partial + " into place");
+            return dbHelper.updateThumbPath(entry.getId(), target.getAbsolutePath());
+        } catch (Exception e) {
+            partial.delete();
+            Log.w(TAG, "Thumbnail for entry " + entry.getId() + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The capture on disk, or the offline copy of an uploaded original
+    private File localSource(ImageEntry entry) {
+        String path = entry.getImagePath();
+        if (path != null && !DeliveryUrlBuilder.isRemote(path) && !isContentUri(path)) {
+            File file = new File(path);
+            if (file.exists()) return file;
+        }
+        return OfflineImageStore.getInstance(appContext).get(entry.getPublicId());
+    }
+
+    private static boolean isContentUri(String path) {
+        return path != null && path.startsWith("content://");
+    }
+
+    private static void write(Bitmap bitmap, File target) throws IOException {
+        try (OutputStream out = new FileOutputStream(target)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, THUMB_QUALITY, out)) {
+                throw new IOException("Encoding thumbnail failed");
+            }
+        }
+    }
+
+    private boolean batteryAllowsBackfill() {
+        PowerManager power = (PowerManager) appContext.getSystemService(Context.POWER_SERVICE);
+        if (power != null && power.isPowerSaveMode()) return false;
+        BatteryManager battery = (BatteryManager) appContext.getSystemService(Context.BATTERY_SERVICE);
+        if (battery == null) return true;
+        return battery.isCharging()
+                || battery.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY) >= MIN_BATTERY_PERCENT;
+    }
+}
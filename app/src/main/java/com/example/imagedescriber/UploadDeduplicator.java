@@ -0,0 +1,105 @@
+package com.example.imagedescriber;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Skips uploads of bytes we have already uploaded. Files are hashed with SHA-256 while streaming
+ * from disk; if a row with the same hash already has a {@code public_id}, the new entry's resource
+ * is created from that row's Cloudinary URL instead of the file. Each entry still gets a resource
+ * of its own. The bytes that did not have to be sent are counted across sessions.
+ */
+public class UploadDeduplicator {
+
+    private static final String TAG = "UploadDeduplicator";
+
+    private static final String PREFS = "upload_dedup";
+    private static final String KEY_BYTES_SAVED = "bytes_saved";
+    private static final String KEY_REUSE_COUNT = "reuse_count";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static UploadDeduplicator instance;
+
+    private final DatabaseHelper dbHelper;
+    private final SharedPreferences prefs;
+
+    public static synchronized UploadDeduplicator getInstance(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            instance = new UploadDeduplicator(DatabaseHelper.getInstance(app),
+                    app.getSharedPreferences(PREFS, Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    UploadDeduplicator(DatabaseHelper dbHelper, SharedPreferences prefs) {
+        this.dbHelper = dbHelper;
+        this.prefs = prefs;
+    }
+
+    /** Hex SHA-256 of the file, read in fixed-size blocks so large images are never held in memory. */
+    public static String sha256(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return sha256(in);
+        }
+    }
+
+    static String sha256(InputStream in) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            digest.update(buffer, 0, len);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * An already uploaded entry with the same content as {@code file}, or null. When found, the
+     * file's size is counted as saved bandwidth, so call this only right before an upload.
+     */
+    public ImageEntry findExisting(File file, String contentHash) {
+        ImageEntry existing = dbHelper.findUploadedByContentHash(contentHash);
+        if (existing != null && existing.getCloudinaryUrl() == null) return null;
+        if (existing != null) {
+            recordReuse(file.length());
+            Log.d(TAG, "Reusing " + existing.getPublicId() + " for " + file.getName()
+                    + ", " + getBytesSaved() + " bytes saved over " + getReuseCount() + " reuse(s)");
+        }
+        return existing;
+    }
+
+    synchronized void recordReuse(long bytes) {
+        prefs.edit()
+                .putLong(KEY_BYTES_SAVED, getBytesSaved() + bytes)
+                .putLong(KEY_REUSE_COUNT, getReuseCount() + 1)
+                .apply();
+    }
+
+    public long getBytesSaved() {
+        return prefs.getLong(KEY_BYTES_SAVED, 0);
+    }
+
+    public long getReuseCount() {
+        return prefs.getLong(KEY_REUSE_COUNT, 0);
+    }
+}
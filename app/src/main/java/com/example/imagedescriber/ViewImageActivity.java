@@ -1,14 +1,7 @@
 package com.example.imagedescriber;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
-import android.media.ExifInterface;
-import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import android.view.MenuItem;
 import android.widget.ImageView;
@@ -18,16 +11,9 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class ViewImageActivity extends AppCompatActivity {
     private static final String TAG = "ViewImageActivity";
@@ -41,9 +27,6 @@ public class ViewImageActivity extends AppCompatActivity {
     private ImageEntry imageEntry;
     private long imageId;
 
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
-    private final Handler mainHandler = new Handler(Looper.getMainLooper());
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -56,7 +39,7 @@ public class ViewImageActivity extends AppCompatActivity {
         timestampTextView = findViewById(R.id.timestamp_text);
         imageView = findViewById(R.id.image_view);
 
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
 
         imageId = getIntent().getLongExtra("IMAGE_ID", -1);
         if (imageId == -1) {
@@ -101,97 +84,22 @@ public class ViewImageActivity extends AppCompatActivity {
         // Log image path
         Log.d(TAG, "Trying to load image from path: " + imageEntry.getImagePath());
 
-        // Try local path first, fallback to Cloudinary if needed
-        if (imageEntry.getImagePath() != null && !imageEntry.getImagePath().trim().isEmpty()) {
-            loadImageFromPath(imageEntry.getImagePath());
-        } else if (imageEntry.getCloudinaryUrl() != null && !imageEntry.getCloudinaryUrl().trim().isEmpty()) {
-            loadImageFromUrl(imageEntry.getCloudinaryUrl());
-        } else {
+        // Local file first, then the offline copy, then Cloudinary
+        OfflineImageStore store = OfflineImageStore.getInstance(this);
+        String source = store.resolve(imageEntry);
+        if (source == null || source.trim().isEmpty()) {
             showError("No valid image path found.");
-        }
-    }
-
-    private void loadImageFromPath(String path) {
-        if (path == null || path.trim().isEmpty()) {
-            showError("Invalid image path");
             return;
         }
 
-        if (path.startsWith("http")) {
-            loadImageFromUrl(path);
-        } else if (path.startsWith("content://")) {
-            try (InputStream inputStream = getContentResolver().openInputStream(Uri.parse(path))) {
-                Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-                imageView.setImageBitmap(bitmap);
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to load image from content URI", e);
-                showError("Could not load image");
-            }
-        } else {
-            File file = new File(path);
-            if (file.exists()) {
-                BitmapFactory.Options options = new BitmapFactory.Options();
-                options.inSampleSize = 2;
-                Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
-                bitmap = rotateImageIfRequired(bitmap, file.getAbsolutePath());
-                imageView.setImageBitmap(bitmap);
-            } else {
-                Log.e(TAG, "File does not exist: " + path);
-                showError("Image file not found");
-            }
-        }
-    }
-    private Bitmap rotateImageIfRequired(Bitmap img, String imagePath) {
-        try {
-            ExifInterface exif = new ExifInterface(imagePath);
-            int orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
-            Matrix matrix = new Matrix();
-            switch (orientation) {
-                case ExifInterface.ORIENTATION_ROTATE_90:
-                    matrix.postRotate(90);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_180:
-                    matrix.postRotate(180);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_270:
-                    matrix.postRotate(270);
-                    break;
-                default:
-                    return img;
-            }
-            return Bitmap.createBitmap(img, 0, 0, img.getWidth(), img.getHeight(), matrix, true);
-        } catch (IOException e) {
-            Log.e(TAG, "Exif rotation error", e);
-            return img;
-        }
-    }
-
-
-    private void loadImageFromUrl(String urlString) {
-        executor.execute(() -> {
-            Bitmap bitmap = null;
-            try {
-                URL url = new URL(urlString);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setDoInput(true);
-                connection.connect();
-
-                try (InputStream input = connection.getInputStream()) {
-                    bitmap = BitmapFactory.decodeStream(input);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading image from URL", e);
-            }
-
-            Bitmap finalBitmap = bitmap;
-            mainHandler.post(() -> {
-                if (finalBitmap != null) {
-                    imageView.setImageBitmap(finalBitmap);
-                } else {
-                    showError("Failed to load image from the internet");
-                }
-            });
-        });
+        // Once shown, keep this entry offline from the bytes just loaded, and on Wi-Fi the rest of
+        // this farmer's and location's entries
+        ImageEntry entry = imageEntry;
+        ImageLoader.getInstance(this).load(source, imageView, R.drawable.image_placeholder_background,
+                R.drawable.placeholder, () -> {
+                    store.onViewed(entry);
+                    store.requestPrefetch(entry.getFarmerName(), entry.getLocation());
+                });
     }
 
     private void showDeleteConfirmationDialog() {
@@ -234,10 +142,4 @@ public class ViewImageActivity extends AppCompatActivity {
         }
         return super.onOptionsItemSelected(item);
     }
-
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        executor.shutdown();
-    }
 }
@@ -0,0 +1,66 @@
+package com.example.imagedescriber;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CloudContextTest {
+
+    @Test
+    public void formatThenParse_roundTripsEscapedValues() {
+        ImageEntry entry = new ImageEntry();
+        entry.setDescription("spots=yellow|brown");
+        entry.setFarmerName("Ravi");
+        entry.setTitle("Tomato");
+        entry.setPlantDisease("Leaf Blight");
+        entry.setLocation("Mysuru, Karnataka");
+        entry.setTimestamp(1_700_000_000_000L);
+
+        CloudContext context = CloudContext.parse(CloudContext.format(entry));
+
+        assertEquals("spots=yellow|brown", context.get(CloudContext.ALT));
+        assertEquals("Ravi", context.get(CloudContext.FARMER_NAME));
+        assertEquals("Tomato", context.get(CloudContext.PLANT_NAME));
+        assertEquals("Leaf Blight", context.get(CloudContext.DISEASE));
+        assertEquals("Mysuru, Karnataka", context.get(CloudContext.LOCATION));
+        assertNull(context.get(CloudContext.DETAILS));
+        assertEquals(1_700_000_000_000L, context.getTimestamp(0));
+    }
+
+    @Test
+    public void parse_acceptsLegacyUnescapedContext() {
+        CloudContext context = CloudContext.parse(
+                "alt=null|farmer_name=Asha|plant_name=Rice|disease=Blast|location=Hassan|details=null|timestamp=05-03-2024 14:30");
+
+        assertNull(context.get(CloudContext.ALT));
+        assertEquals("Asha", context.get(CloudContext.FARMER_NAME));
+        assertEquals("Blast", context.get(CloudContext.DISEASE));
+        assertNull(context.get(CloudContext.DETAILS));
+        assertNotEquals(-1, context.getTimestamp(-1));
+    }
+
+    @Test
+    public void toEntry_readsAdminApiResource() {
+        Map<String, Object> custom = new HashMap<>();
+        custom.put("plant_name", "Maize");
+        custom.put("disease", "Rust");
+        Map<String, Object> context = new HashMap<>();
+        context.put("custom", custom);
+        Map<String, Object> resource = new HashMap<>();
+        resource.put("public_id", "agridata_1");
+        resource.put("secure_url", "https://res.cloudinary.com/demo/image/upload/agridata_1.jpg");
+        resource.put("created_at", "2024-03-05T09:00:00Z");
+        resource.put("context", context);
+
+        ImageEntry entry = CloudReconciler.toEntry(resource);
+
+        assertEquals("agridata_1", entry.getPublicId());
+        assertEquals(entry.getCloudinaryUrl(), entry.getImagePath());
+        assertEquals("Maize", entry.getTitle());
+        assertEquals("Rust", entry.getPlantDisease());
+        assertEquals(1_709_629_200_000L, entry.getTimestamp());
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.imagedescriber;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DeliveryUrlBuilderTest {
+
+    private final DeliveryUrlBuilder builder = new DeliveryUrlBuilder("demo");
+
+    @Test
+    public void thumbnail_insertsTransformationIntoSecureUrl() {
+        ImageEntry entry = new ImageEntry();
+        entry.setCloudinaryUrl("https://res.cloudinary.com/demo/image/upload/v1700000000/leaf.jpg");
+        entry.setPublicId("leaf");
+
+        assertEquals("https://res.cloudinary.com/demo/image/upload/c_fill,w_640,ar_1.1,f_auto,q_auto/v1700000000/leaf.jpg",
+                builder.thumbnail(entry, 540, 500));
+    }
+
+    @Test
+    public void thumbnail_buildsFromPublicIdWithoutUrl() {
+        ImageEntry entry = new ImageEntry();
+        entry.setImagePath("/data/user/0/app/files/leaf.jpg");
+        entry.setPublicId("folder/leaf");
+
+        assertEquals("https://res.cloudinary.com/demo/image/upload/c_fill,w_320,ar_1.5,f_auto,q_auto/folder/leaf",
+                builder.thumbnail(entry, 300, 200));
+    }
+
+    @Test
+    public void thumbnail_nullForLocalOnlyEntries() {
+        ImageEntry entry = new ImageEntry();
+        entry.setImagePath("/data/user/0/app/files/leaf.jpg");
+
+        assertNull(builder.thumbnail(entry, 300, 200));
+    }
+
+    @Test
+    public void nearbyCellSizesShareOneUrl() {
+        assertEquals(DeliveryUrlBuilder.transformation(530, 525), DeliveryUrlBuilder.transformation(540, 525));
+        assertEquals(480, DeliveryUrlBuilder.bucket(321));
+        assertEquals(160, DeliveryUrlBuilder.bucket(1));
+        assertEquals(1280, DeliveryUrlBuilder.bucket(4000));
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.imagedescriber;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ImageTranscoderTest {
+
+    @Test
+    public void sampleSize_keepsLongEdgeAtOrAboveTarget() {
+        // 12 MP capture: halving once gives 2000 px, halving again would drop under 1024
+        assertEquals(2, ImageTranscoder.sampleSizeFor(4000, 3000, 1024));
+        assertEquals(4, ImageTranscoder.sampleSizeFor(3000, 4096, 1024));
+        assertEquals(8, ImageTranscoder.sampleSizeFor(8192, 6144, 1024));
+    }
+
+    @Test
+    public void sampleSize_isOneForSmallImages() {
+        assertEquals(1, ImageTranscoder.sampleSizeFor(1024, 768, 1024));
+        assertEquals(1, ImageTranscoder.sampleSizeFor(640, 480, 1024));
+        assertEquals(1, ImageTranscoder.sampleSizeFor(2047, 100, 1024));
+    }
+}
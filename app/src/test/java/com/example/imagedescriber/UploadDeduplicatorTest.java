@@ -0,0 +1,30 @@
+package com.example.imagedescriber;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class UploadDeduplicatorTest {
+
+    @Test
+    public void sha256_matchesKnownDigest() throws IOException {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                UploadDeduplicator.sha256(new ByteArrayInputStream("abc".getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    @Test
+    public void sha256_spansMultipleBuffers() throws IOException {
+        byte[] large = new byte[200 * 1024 + 7];
+        for (int i = 0; i < large.length; i++) large[i] = (byte) i;
+        byte[] changed = large.clone();
+        changed[changed.length - 1]++;
+
+        String digest = UploadDeduplicator.sha256(new ByteArrayInputStream(large));
+        assertEquals(digest, UploadDeduplicator.sha256(new ByteArrayInputStream(large.clone())));
+        assertNotEquals(digest, UploadDeduplicator.sha256(new ByteArrayInputStream(changed)));
+    }
+}